@@ -0,0 +1,58 @@
+package com.excrele;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.command.CommandSender;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Fired once after a bulk operation changed the ranks of many players, instead of one
+ * event per player.
+ */
+public class BulkRankChangeEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+    private final CommandSender sender;
+    private final String operation;
+    private final Map<UUID, String> oldRanks;
+    private final Map<UUID, String> newRanks;
+
+    public BulkRankChangeEvent(CommandSender sender, String operation, Map<UUID, String> oldRanks, Map<UUID, String> newRanks) {
+        this.sender = sender;
+        this.operation = operation;
+        this.oldRanks = oldRanks;
+        this.newRanks = newRanks;
+    }
+
+    public CommandSender getSender() {
+        return sender;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the rank each changed player had before.
+     */
+    public Map<UUID, String> getOldRanks() {
+        return oldRanks;
+    }
+
+    /**
+     * Get the rank each changed player has now.
+     */
+    public Map<UUID, String> getNewRanks() {
+        return newRanks;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
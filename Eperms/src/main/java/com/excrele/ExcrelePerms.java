@@ -1,7 +1,6 @@
 package com.excrele;
 
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -12,16 +11,22 @@ import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.ChatColor;
 import org.bukkit.event.Listener;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.bukkit.OfflinePlayer;
 import com.excrele.api.ExcrelePermsAPI;
@@ -34,17 +39,34 @@ import com.excrele.yaml.YAMLExportImportManager;
 import com.excrele.yaml.YAMLLoggingManager;
 import com.excrele.yaml.YAMLCommentManager;
 import com.excrele.managers.TrackManager;
+import com.excrele.managers.FormatCache;
 import com.excrele.managers.RankManager;
+import com.excrele.model.RankSnapshot;
+import com.excrele.permissions.AttachmentApplier;
+import com.excrele.permissions.ExcrelePermissible;
+import com.excrele.permissions.PermissibleInjector;
+import com.excrele.permissions.RankPermissionRegistry;
 import com.excrele.managers.TemporaryRankManager;
 
 @SuppressWarnings("deprecation")
 public class ExcrelePerms extends JavaPlugin implements Listener {
+    private static final int MAX_NAME_COMPLETIONS = 50;
+    // Player entries live in ranks.yml, or in players.yml after a split
+    private static final String[] PLAYER_FILES = {"ranks.yml", "players.yml"};
+    
     private File configFile;
     private FileConfiguration ranksConfig;
     private Map<UUID, PermissionAttachment> playerPermissions;
+    private Map<UUID, PermissionAttachment> grantPermissions;
+    private com.excrele.managers.SnapshotManager snapshotManager;
+    private com.excrele.managers.PlayerNameIndex playerNameIndex;
+    private com.excrele.managers.TabListManager tabListManager;
+    private com.excrele.managers.LoginPrefetcher loginPrefetcher;
+    private boolean injectPermissible;
     
     // YAML Managers
     private YAMLFileManager yamlFileManager;
+    private com.excrele.storage.StorageBackend storageBackend;
     private YAMLBackupManager backupManager;
     private YAMLValidationManager validationManager;
     private YAMLHistoryManager historyManager;
@@ -63,6 +85,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
     private com.excrele.managers.ProgressManager progressManager;
     private com.excrele.managers.PermissionCacheManager permissionCacheManager;
     private com.excrele.yaml.YAMLConfigWatcher configWatcher;
+    private com.excrele.managers.RankReloadManager rankReloadManager;
+    private com.excrele.managers.WorkScheduler workScheduler;
     private com.excrele.managers.MetricsManager metricsManager;
     private com.excrele.managers.MultiWorldManager multiWorldManager;
     private com.excrele.managers.MigrationManager migrationManager;
@@ -74,18 +98,32 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
 
         // Initialize YAML managers
         yamlFileManager = new YAMLFileManager(this);
+        storageBackend = createStorageBackend();
         backupManager = new YAMLBackupManager(this, yamlFileManager);
         validationManager = new YAMLValidationManager(this, yamlFileManager);
-        historyManager = new YAMLHistoryManager(this, yamlFileManager);
-        exportImportManager = new YAMLExportImportManager(this, yamlFileManager);
+        historyManager = new YAMLHistoryManager(this, yamlFileManager, storageBackend);
         loggingManager = new YAMLLoggingManager(this);
         commentManager = new YAMLCommentManager(this, yamlFileManager);
         
         // Initialize feature managers
+        playerNameIndex = new com.excrele.managers.PlayerNameIndex(new File(getDataFolder(), "data/names.log"),
+            yamlFileManager.getIOExecutor(), getLogger());
+        if (!playerNameIndex.load()) {
+            // First start: index every player the server has seen, in the background
+            playerNameIndex.seedAsync(getServer());
+        }
+        getServer().getOnlinePlayers().forEach(player -> playerNameIndex.update(player.getUniqueId(), player.getName()));
         trackManager = new TrackManager(this, yamlFileManager);
-        rankManager = new RankManager(this, yamlFileManager);
-        temporaryRankManager = new TemporaryRankManager(this, yamlFileManager);
+        snapshotManager = new com.excrele.managers.SnapshotManager(this, yamlFileManager, storageBackend);
+        exportImportManager = new YAMLExportImportManager(this, yamlFileManager, snapshotManager, storageBackend);
+        tabListManager = new com.excrele.managers.TabListManager(this, snapshotManager);
+        workScheduler = new com.excrele.managers.WorkScheduler(this,
+            yamlFileManager.getConfig("config.yml").getDouble("work-budget-ms", 2.0));
+        rankManager = new RankManager(this, yamlFileManager, snapshotManager, workScheduler, this::refreshPlayerPermissions);
+        temporaryRankManager = new TemporaryRankManager(this, storageBackend, snapshotManager, this::refreshPlayerPermissions);
         temporaryRankManager.loadTemporaryRanks();
+        loginPrefetcher = new com.excrele.managers.LoginPrefetcher(this, yamlFileManager.getIOExecutor(), snapshotManager,
+            rankManager, temporaryRankManager, yamlFileManager.getConfig("config.yml").getLong("prefetch-timeout-ms", 2000L));
         bulkOperationsManager = new com.excrele.managers.BulkOperationsManager(this, yamlFileManager);
         
         // Initialize integrations (optional dependencies)
@@ -98,10 +136,13 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         confirmationManager = new com.excrele.managers.ConfirmationManager();
         progressManager = new com.excrele.managers.ProgressManager();
         permissionCacheManager = new com.excrele.managers.PermissionCacheManager(300000); // 5 minute TTL
-        configWatcher = new com.excrele.yaml.YAMLConfigWatcher(this);
+        rankReloadManager = new com.excrele.managers.RankReloadManager(this, yamlFileManager, snapshotManager,
+            rankManager, storageBackend, config -> ranksConfig = config);
+        configWatcher = new com.excrele.yaml.YAMLConfigWatcher(this, yamlFileManager);
         configWatcher.startWatching();
+        yamlFileManager.startCompaction();
         metricsManager = new com.excrele.managers.MetricsManager(this);
-        multiWorldManager = new com.excrele.managers.MultiWorldManager(this, yamlFileManager);
+        multiWorldManager = new com.excrele.managers.MultiWorldManager(this);
         migrationManager = new com.excrele.managers.MigrationManager(this, yamlFileManager);
 
         // Initialize configuration (backward compatibility - use single file mode initially)
@@ -111,6 +152,17 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         }
         ranksConfig = yamlFileManager.getConfig("ranks.yml");
         playerPermissions = new HashMap<>();
+        grantPermissions = new HashMap<>();
+        
+        // Publish the read model and compile the rank hierarchy; both are kept current on every mutation
+        snapshotManager.reload();
+        rankManager.rebuildRankGraph();
+        
+        // Optionally answer permission checks straight from the compiled rank tries
+        injectPermissible = yamlFileManager.getConfig("config.yml").getBoolean("inject-permissible", false);
+        if (injectPermissible) {
+            getServer().getOnlinePlayers().forEach(player -> PermissibleInjector.inject(player, rankManager, getLogger()));
+        }
 
         // Validate configuration on startup
         YAMLValidationManager.ValidationResult validation = validationManager.validateAll();
@@ -126,11 +178,14 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             }
         }
 
-        // Load permissions for online players
-        getServer().getOnlinePlayers().forEach(this::loadPlayerPermissions);
+        // Load permissions for online players (this also puts them in their tab list team)
+        tabListManager.clear();
+        List<UUID> online = new ArrayList<>();
+        getServer().getOnlinePlayers().forEach(player -> online.add(player.getUniqueId()));
+        rankManager.getChangePropagator().refresh(online);
         
-        // Start tab list sorting task (runs every 5 seconds)
-        getServer().getScheduler().runTaskTimer(this, this::sortTabListByPriority, 100L, 100L);
+        // Only now can expired temporary ranks restore ranks and refresh players
+        temporaryRankManager.start();
         
         // Register event listener for rank events
         getServer().getPluginManager().registerEvents(new ExcrelePermsListener(this), this);
@@ -167,9 +222,56 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         // Remove permissions for all players
         playerPermissions.values().forEach(PermissionAttachment::remove);
         playerPermissions.clear();
+        grantPermissions.values().forEach(PermissionAttachment::remove);
+        grantPermissions.clear();
+        if (injectPermissible) {
+            getServer().getOnlinePlayers().forEach(player -> PermissibleInjector.uninject(player, getLogger()));
+        }
+        if (tabListManager != null) {
+            tabListManager.clear();
+        }
+        if (rankManager != null) {
+            rankManager.getPermissionRegistry().unregisterAll();
+        }
+        if (configWatcher != null) {
+            configWatcher.stopWatching();
+        }
+        if (bulkOperationsManager != null) {
+            bulkOperationsManager.shutdown();
+        }
+        if (workScheduler != null) {
+            workScheduler.cancelAll();
+        }
+        if (storageBackend != null) {
+            storageBackend.close();
+        }
+        // Write out anything still waiting in the write-behind window
+        if (yamlFileManager != null) {
+            yamlFileManager.shutdown();
+        }
         getLogger().info("ExcrelePerms disabled!");
     }
 
+    /**
+     * Open the player data backend selected by storage-backend in config.yml, falling back to YAML.
+     */
+    private com.excrele.storage.StorageBackend createStorageBackend() {
+        com.excrele.storage.StorageBackend yaml = new com.excrele.storage.YamlStorageBackend(this, yamlFileManager);
+        String name = yamlFileManager.getConfig("config.yml").getString("storage-backend", "yaml");
+        if ("sqlite".equalsIgnoreCase(name)) {
+            com.excrele.storage.StorageBackend sqlite = new com.excrele.storage.SqliteStorageBackend(this, yaml);
+            if (sqlite.init()) {
+                getLogger().info("Using SQLite storage backend");
+                return sqlite;
+            }
+            getLogger().severe("Failed to open SQLite storage, falling back to YAML");
+        } else if (!"yaml".equalsIgnoreCase(name)) {
+            getLogger().warning("Unknown storage-backend '" + name + "', using YAML");
+        }
+        yaml.init();
+        return yaml;
+    }
+    
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (command.getName().equalsIgnoreCase("rank")) {
@@ -456,41 +558,94 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         return false;
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        // Read and work out the player's data off the main thread; login and join then only attach it
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            loginPrefetcher.prefetch(event.getUniqueId());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        // With lazy loading, bring the player's rank into the snapshot before anything reads it
+        UUID uuid = event.getPlayer().getUniqueId();
+        com.excrele.managers.LoginPrefetcher.PrefetchedPlayer prefetched = loginPrefetcher.get(uuid);
+        if (prefetched != null) {
+            snapshotManager.loadPlayer(uuid, prefetched.getRank(), prefetched.getChangeCount());
+        } else {
+            // Not prefetched in time: read it here
+            snapshotManager.loadPlayer(uuid);
+        }
+        
+        // Inject before other plugins add attachments or check permissions
+        if (injectPermissible) {
+            PermissibleInjector.inject(event.getPlayer(), rankManager, getLogger());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(PlayerLoginEvent event) {
+        // No quit event follows a refused login
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            loginPrefetcher.remove(event.getPlayer().getUniqueId());
+            snapshotManager.unloadPlayer(event.getPlayer().getUniqueId());
+        }
+    }
+    
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
-        String rank = ranksConfig.getString("players." + player.getUniqueId() + ".rank", "default");
-        String prefix = ranksConfig.getString("ranks." + rank + ".info.prefix", "");
-        String suffix = ranksConfig.getString("ranks." + rank + ".info.suffix", "");
-
-        // Translate color codes
-        prefix = ChatColor.translateAlternateColorCodes('&', prefix);
-        suffix = ChatColor.translateAlternateColorCodes('&', suffix);
+        playerNameIndex.update(player.getUniqueId(), player.getName());
+        FormatCache.RankFormat format = rankManager.getFormatCache().get(
+            snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId()));
 
         // Set custom join message with prefix and suffix
-        String joinMessage = prefix + player.getName() + suffix + " joined the game";
+        String joinMessage = format.getPrefix() + player.getName() + format.getSuffix() + " joined the game";
         event.setJoinMessage(joinMessage);
 
         // Load permissions and display name (prefix only, suffix for chat)
-        loadPlayerPermissions(player);
+        loadPlayerPermissions(player, loginPrefetcher.remove(player.getUniqueId()));
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        String rank = ranksConfig.getString("players." + player.getUniqueId() + ".rank", "default");
-        String prefix = ranksConfig.getString("ranks." + rank + ".info.prefix", "");
-        String suffix = ranksConfig.getString("ranks." + rank + ".info.suffix", "");
-
-        // Translate color codes
-        prefix = ChatColor.translateAlternateColorCodes('&', prefix);
-        suffix = ChatColor.translateAlternateColorCodes('&', suffix);
+        FormatCache.RankFormat format = rankManager.getFormatCache().get(
+            snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId()));
 
         // Set custom quit message with prefix and suffix
-        String quitMessage = prefix + player.getName() + suffix + " left the game";
+        String quitMessage = format.getPrefix() + player.getName() + format.getSuffix() + " left the game";
         event.setQuitMessage(quitMessage);
+        
+        tabListManager.remove(player);
+        
+        // The attachment belongs to this Player instance, so it can't be reused on the next join
+        PermissionAttachment attachment = playerPermissions.remove(player.getUniqueId());
+        if (attachment != null) {
+            attachment.remove();
+        }
+        PermissionAttachment grantAttachment = grantPermissions.remove(player.getUniqueId());
+        if (grantAttachment != null) {
+            grantAttachment.remove();
+        }
+        temporaryRankManager.unloadPlayer(player.getUniqueId());
+        loginPrefetcher.remove(player.getUniqueId());
+        if (permissionCacheManager != null) {
+            permissionCacheManager.invalidateCache(player.getUniqueId());
+        }
+        
+        snapshotManager.unloadPlayer(player.getUniqueId());
     }
 
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // Only grants limited to a world depend on where the player is
+        if (temporaryRankManager.hasWorldGrants(event.getPlayer().getUniqueId())) {
+            loadPlayerPermissions(event.getPlayer());
+        }
+    }
+    
     @EventHandler
     public void onPlayerChat(AsyncPlayerChatEvent event) {
         if (event.isCancelled()) {
@@ -498,17 +653,12 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         }
 
         Player player = event.getPlayer();
-        String rank = ranksConfig.getString("players." + player.getUniqueId() + ".rank", "default");
-        String prefix = ranksConfig.getString("ranks." + rank + ".info.prefix", "");
-        String suffix = ranksConfig.getString("ranks." + rank + ".info.suffix", "");
-
-        // Translate color codes
-        prefix = ChatColor.translateAlternateColorCodes('&', prefix);
-        suffix = ChatColor.translateAlternateColorCodes('&', suffix);
+        // Read from the published snapshot and precompiled format; chat runs off the main thread
+        FormatCache.RankFormat format = rankManager.getFormatCache().get(
+            snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId()));
 
         // Use setFormat instead of cancelling - more compatible with other plugins
-        String format = prefix + "%1$s" + suffix + ": %2$s";
-        event.setFormat(format);
+        event.setFormat(format.getChatFormat());
     }
 
     private boolean addPlayerToRank(CommandSender sender, String playerName, String rank) {
@@ -543,18 +693,16 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             try {
                 playerUUID = UUID.fromString(playerName);
             } catch (IllegalArgumentException e) {
-                // Not a UUID, try offline player lookup
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    playerUUID = offlinePlayer.getUniqueId();
-                } else {
-                    sender.sendMessage(ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
+                // Not a UUID, look the name up
+                playerUUID = playerNameIndex.getUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
                     return true;
                 }
             }
         }
 
-        String oldRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
+        String oldRank = snapshotManager.getPlayerRank(playerUUID);
         
         // Get offline player for events
         OfflinePlayer targetPlayer = onlinePlayer != null ? onlinePlayer : getServer().getOfflinePlayer(playerUUID);
@@ -569,21 +717,13 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             return true;
         }
         
-        ranksConfig.set("players." + playerUUID + ".rank", rank);
+        snapshotManager.setPlayerRank(playerUUID, rank);
         
         // Create backup before major operation
         if (backupManager != null) {
             backupManager.createAutoBackup();
         }
         
-        try {
-            saveConfigFileSync();
-        } catch (Exception e) {
-            sender.sendMessage(com.excrele.managers.ErrorMessagesManager.getFileError("ranks.yml", "saving"));
-            getLogger().severe("Error saving ranks.yml: " + e.getMessage());
-            return true;
-        }
-        
         // Record history
         if (historyManager != null) {
             historyManager.recordRankChange(playerUUID, oldRank, rank, sender.getName(), "Manual assignment");
@@ -639,18 +779,16 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             try {
                 playerUUID = UUID.fromString(playerName);
             } catch (IllegalArgumentException e) {
-                // Not a UUID, try offline player lookup
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    playerUUID = offlinePlayer.getUniqueId();
-                } else {
-                    sender.sendMessage(ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
+                // Not a UUID, look the name up
+                playerUUID = playerNameIndex.getUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
             return true;
         }
             }
         }
 
-        String currentRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
+        String currentRank = snapshotManager.getPlayerRank(playerUUID);
         
         // Get track for the rank (or use defaultTrack)
         String trackName = trackManager.getRankTrack(currentRank);
@@ -663,21 +801,13 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             sender.sendMessage(ChatColor.RED + "Cannot promote " + playerName + " further!");
             return true;
         }
-        ranksConfig.set("players." + playerUUID + ".rank", nextRank);
+        snapshotManager.setPlayerRank(playerUUID, nextRank);
         
         // Create backup before major operation
         if (backupManager != null) {
             backupManager.createAutoBackup();
         }
         
-        try {
-            saveConfigFileSync();
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Error saving configuration: " + e.getMessage());
-            getLogger().severe("Error saving ranks.yml: " + e.getMessage());
-            return true;
-        }
-        
         // Record history
         if (historyManager != null) {
             historyManager.recordRankChange(playerUUID, currentRank, nextRank, sender.getName(), "Promotion");
@@ -714,18 +844,16 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             try {
                 playerUUID = UUID.fromString(playerName);
             } catch (IllegalArgumentException e) {
-                // Not a UUID, try offline player lookup
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    playerUUID = offlinePlayer.getUniqueId();
-                } else {
-                    sender.sendMessage(ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
+                // Not a UUID, look the name up
+                playerUUID = playerNameIndex.getUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
             return true;
         }
             }
         }
 
-        String currentRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
+        String currentRank = snapshotManager.getPlayerRank(playerUUID);
         
         // Get track for the rank (or use defaultTrack)
         String trackName = trackManager.getRankTrack(currentRank);
@@ -738,21 +866,13 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             sender.sendMessage(ChatColor.RED + "Cannot demote " + playerName + " further!");
             return true;
         }
-        ranksConfig.set("players." + playerUUID + ".rank", previousRank);
+        snapshotManager.setPlayerRank(playerUUID, previousRank);
         
         // Create backup before major operation
         if (backupManager != null) {
             backupManager.createAutoBackup();
         }
         
-        try {
-            saveConfigFileSync();
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Error saving configuration: " + e.getMessage());
-            getLogger().severe("Error saving ranks.yml: " + e.getMessage());
-            return true;
-        }
-        
         // Record history
         if (historyManager != null) {
             historyManager.recordRankChange(playerUUID, currentRank, previousRank, sender.getName(), "Demotion");
@@ -778,136 +898,95 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
     }
 
     private void reloadConfigFile(CommandSender sender) {
-        if (yamlFileManager != null) {
-            ranksConfig = yamlFileManager.reloadConfig("ranks.yml");
-        } else {
-        ranksConfig = YamlConfiguration.loadConfiguration(configFile);
-        }
-        getServer().getOnlinePlayers().forEach(this::loadPlayerPermissions);
-        // Fire RankReloadEvent
-        RankReloadEvent event = new RankReloadEvent(sender);
-        getServer().getPluginManager().callEvent(event);
-        sender.sendMessage(ChatColor.GREEN + "Ranks configuration reloaded!");
+        // Parsed off the main thread; only the changes are applied, then RankReloadEvent fires
+        sender.sendMessage(ChatColor.YELLOW + "Reloading ranks configuration...");
+        rankReloadManager.reloadAll(sender);
     }
 
     public void loadPlayerPermissions(Player player) {
-        // Remove existing permissions
-        if (playerPermissions.containsKey(player.getUniqueId())) {
-            playerPermissions.get(player.getUniqueId()).remove();
-            playerPermissions.remove(player.getUniqueId());
-        }
-        
+        loadPlayerPermissions(player, null);
+    }
+    
+    /**
+     * Apply a player's rank data, using what was prefetched before they joined where it is
+     * still current.
+     */
+    private void loadPlayerPermissions(Player player, com.excrele.managers.LoginPrefetcher.PrefetchedPlayer prefetched) {
         // Invalidate permission cache
         if (permissionCacheManager != null) {
             permissionCacheManager.invalidateCache(player.getUniqueId());
         }
 
         // Load new permissions
-        String rank = ranksConfig.getString("players." + player.getUniqueId() + ".rank", "default");
-        PermissionAttachment attachment = player.addAttachment(this);
-        playerPermissions.put(player.getUniqueId(), attachment);
-
-        // Apply permissions
-        List<String> permissions = ranksConfig.getStringList("ranks." + rank + ".permissions");
-        for (String perm : permissions) {
-            if (perm.startsWith("-")) {
-                attachment.unsetPermission(perm.substring(1));
-            } else {
-                attachment.setPermission(perm, true);
-            }
+        String rank = snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId());
+        PermissionAttachment attachment = playerPermissions.get(player.getUniqueId());
+        if (attachment == null) {
+            attachment = player.addAttachment(this);
+            playerPermissions.put(player.getUniqueId(), attachment);
         }
 
-        // Apply inherited permissions
-        List<String> inheritances = ranksConfig.getStringList("ranks." + rank + ".inheritance");
-        for (String inheritedRank : inheritances) {
-            List<String> inheritedPerms = ranksConfig.getStringList("ranks." + inheritedRank + ".permissions");
-            for (String perm : inheritedPerms) {
-                if (perm.startsWith("-")) {
-                    attachment.unsetPermission(perm.substring(1));
-                } else {
-                    attachment.setPermission(perm, true);
-                }
+        // Attach the rank's shared permission node; its children hold the flattened permissions,
+        // so the attachment stays one entry regardless of rank size
+        Map<String, Boolean> permissions = prefetched != null
+            ? prefetched.getRankPermissions(rank, rankManager.getRankGraph()) : null;
+        if (permissions == null) {
+            permissions = rankManager.getRankGraph().hasRank(rank)
+                ? Collections.singletonMap(RankPermissionRegistry.getRankNode(rank), true)
+                : Collections.<String, Boolean>emptyMap();
+        }
+        AttachmentApplier.apply(attachment, permissions);
+        
+        // Timed grants get their own attachment, added after the rank's so they take precedence
+        if (prefetched != null && temporaryRankManager != null) {
+            temporaryRankManager.usePreparedPermissions(player, prefetched.getGrants());
+        }
+        Map<String, Boolean> granted = temporaryRankManager != null
+            ? temporaryRankManager.getGrantedPermissions(player) : Collections.<String, Boolean>emptyMap();
+        PermissionAttachment grantAttachment = grantPermissions.get(player.getUniqueId());
+        if (grantAttachment == null && !granted.isEmpty()) {
+            grantAttachment = player.addAttachment(this);
+            grantPermissions.put(player.getUniqueId(), grantAttachment);
+        }
+        if (grantAttachment != null) {
+            AttachmentApplier.apply(grantAttachment, granted);
+        }
+        if (injectPermissible) {
+            ExcrelePermissible permissible = PermissibleInjector.inject(player, rankManager, getLogger());
+            if (permissible != null) {
+                // The rank trie doesn't know about grants; let Bukkit resolve both attachments then
+                permissible.setRank(granted.isEmpty() ? rank : null);
             }
         }
 
         // Set prefix for display name (tab list and above head) - no suffix here
-        String prefix = ranksConfig.getString("ranks." + rank + ".info.prefix", "");
-        player.setDisplayName(ChatColor.translateAlternateColorCodes('&', prefix + player.getName()));
+        String prefix = rankManager.getFormatCache().get(rank).getPrefix();
+        player.setDisplayName(prefix + player.getName());
         
-        // Update tab list name with priority-based sorting
-        updateTabListName(player, rank);
+        // Update tab list name and move the player to their rank's team (which sets the order)
+        updateTabListName(player, prefix);
+        tabListManager.update(player);
     }
     
     /**
-     * Update player's tab list name based on rank priority.
+     * Re-apply a player's rank data and recalculate their permissions. Used when the
+     * definition of their rank changed, which leaves their attachment itself untouched.
      */
-    private void updateTabListName(Player player, String rank) {
-        String prefix = ranksConfig.getString("ranks." + rank + ".info.prefix", "");
-        String displayName = ChatColor.translateAlternateColorCodes('&', prefix + player.getName());
-        
-        // Set tab list name (this affects tab list order in some implementations)
-        try {
-            player.setPlayerListName(displayName);
-        } catch (Exception e) {
-            // Fallback if setPlayerListName is not available
-        }
+    public void refreshPlayerPermissions(Player player) {
+        loadPlayerPermissions(player);
+        player.recalculatePermissions();
     }
     
     /**
-     * Sort players in tab list by rank priority.
-     * This is called periodically to maintain proper order.
+     * Update player's tab list name with their rank prefix.
      */
-    private void sortTabListByPriority() {
-        getServer().getScheduler().runTask(this, () -> {
-            List<Player> players = new ArrayList<>(getServer().getOnlinePlayers());
-            
-            // Sort by rank priority (higher priority first)
-            players.sort((p1, p2) -> {
-                String rank1 = ranksConfig.getString("players." + p1.getUniqueId() + ".rank", "default");
-                String rank2 = ranksConfig.getString("players." + p2.getUniqueId() + ".rank", "default");
-                
-                int priority1 = ranksConfig.getInt("ranks." + rank1 + ".priority", 0);
-                int priority2 = ranksConfig.getInt("ranks." + rank2 + ".priority", 0);
-                
-                // Higher priority first, then by name
-                if (priority1 != priority2) {
-                    return Integer.compare(priority2, priority1);
-                }
-                return p1.getName().compareToIgnoreCase(p2.getName());
-            });
-            
-            // Update tab list names in order
-            for (int i = 0; i < players.size(); i++) {
-                Player player = players.get(i);
-                String rank = ranksConfig.getString("players." + player.getUniqueId() + ".rank", "default");
-                updateTabListName(player, rank);
-            }
-        });
-    }
-
-    private void saveConfigFile() throws IOException {
-        // Use YAML manager for async save if enabled
-        if (yamlFileManager != null && yamlFileManager.getConfig("config.yml").getBoolean("async-operations", true)) {
-            yamlFileManager.saveConfig("ranks.yml", ranksConfig);
-        } else {
-            ranksConfig.save(configFile);
-        }
-    }
-    
-    private boolean saveConfigFileSync() {
+    private void updateTabListName(Player player, String prefix) {
         try {
-            if (yamlFileManager != null) {
-                return yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
-            } else {
-                ranksConfig.save(configFile);
-                return true;
-            }
-        } catch (IOException e) {
-            getLogger().severe("Failed to save config: " + e.getMessage());
-            return false;
+            player.setPlayerListName(prefix + player.getName());
+        } catch (Exception e) {
+            // Fallback if setPlayerListName is not available
         }
     }
-
+    
     private boolean listRanks(CommandSender sender) {
         if (!ranksConfig.contains("ranks")) {
             sender.sendMessage(ChatColor.RED + "No ranks configured!");
@@ -920,7 +999,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             if (!prefix.isEmpty()) {
                 prefix = ChatColor.translateAlternateColorCodes('&', prefix);
             }
-            sender.sendMessage(ChatColor.YELLOW + "- " + rank + (prefix.isEmpty() ? "" : " " + prefix + rank + ChatColor.RESET));
+            int members = snapshotManager.getMemberCount(rank);
+            sender.sendMessage(ChatColor.YELLOW + "- " + rank + (prefix.isEmpty() ? "" : " " + prefix + rank + ChatColor.RESET)
+                + ChatColor.GRAY + " (" + members + (members == 1 ? " member)" : " members)"));
         }
 
         // Show progression track if exists
@@ -1032,24 +1113,21 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             // Try UUID lookup
             try {
                 playerUUID = UUID.fromString(playerName);
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerUUID);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    displayName = offlinePlayer.getName() != null ? offlinePlayer.getName() : playerUUID.toString();
-                }
             } catch (IllegalArgumentException e) {
-                // Not a UUID, try offline player lookup
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    playerUUID = offlinePlayer.getUniqueId();
-                    displayName = offlinePlayer.getName() != null ? offlinePlayer.getName() : playerName;
-                } else {
-                    sender.sendMessage(ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
+                // Not a UUID, look the name up
+                playerUUID = playerNameIndex.getUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player '" + playerName + "' not found! (Player must have joined the server before)");
                     return true;
                 }
             }
+            String knownName = playerNameIndex.getName(playerUUID);
+            if (knownName != null) {
+                displayName = knownName;
+            }
         }
 
-        String rank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
+        String rank = snapshotManager.getPlayerRank(playerUUID);
         sender.sendMessage(ChatColor.GOLD + "=== Player Rank Info ===");
         sender.sendMessage(ChatColor.YELLOW + "Player: " + ChatColor.WHITE + displayName);
         sender.sendMessage(ChatColor.YELLOW + "UUID: " + ChatColor.WHITE + playerUUID.toString());
@@ -1077,7 +1155,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return The player's rank name, or "default" if not set
      */
     public String getPlayerRank(UUID uuid) {
-        return ranksConfig.getString("players." + uuid + ".rank", "default");
+        return snapshotManager.getPlayerRank(uuid);
     }
 
     /**
@@ -1106,39 +1184,36 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             return false;
         }
         
-        try {
-            String oldRank = ranksConfig.getString("players." + uuid + ".rank", "default");
-            OfflinePlayer targetPlayer = getServer().getOfflinePlayer(uuid);
-            
-            // Fire pre-event
-            com.excrele.events.RankPreAddEvent preEvent = new com.excrele.events.RankPreAddEvent(
-                targetPlayer, oldRank, rank, "API", "API call");
-            getServer().getPluginManager().callEvent(preEvent);
-            
-            if (preEvent.isCancelled()) {
-                getLogger().warning("Rank change cancelled by event handler for UUID: " + uuid);
-                return false;
-            }
-            
-            ranksConfig.set("players." + uuid + ".rank", rank);
-            saveConfigFile();
-            
-            // Update online player if they're online
-            Player player = getServer().getPlayer(uuid);
-            if (player != null) {
-                loadPlayerPermissions(player);
-            }
-            
-            // Fire post-event
-            com.excrele.events.RankPostAddEvent postEvent = new com.excrele.events.RankPostAddEvent(
-                targetPlayer, oldRank, rank, "API", "API call");
-            getServer().getPluginManager().callEvent(postEvent);
-            
-            return true;
-        } catch (IOException e) {
-            getLogger().severe("Error saving ranks.yml: " + e.getMessage());
+        String oldRank = snapshotManager.getPlayerRank(uuid);
+        OfflinePlayer targetPlayer = getServer().getOfflinePlayer(uuid);
+        
+        // Fire pre-event
+        com.excrele.events.RankPreAddEvent preEvent = new com.excrele.events.RankPreAddEvent(
+            targetPlayer, oldRank, rank, "API", "API call");
+        getServer().getPluginManager().callEvent(preEvent);
+        
+        if (preEvent.isCancelled()) {
+            getLogger().warning("Rank change cancelled by event handler for UUID: " + uuid);
+            return false;
+        }
+        
+        if (!snapshotManager.setPlayerRank(uuid, rank)) {
+            getLogger().warning("Could not store rank " + rank + " for UUID: " + uuid);
             return false;
         }
+        
+        // Update online player if they're online
+        Player player = getServer().getPlayer(uuid);
+        if (player != null) {
+            loadPlayerPermissions(player);
+        }
+        
+        // Fire post-event
+        com.excrele.events.RankPostAddEvent postEvent = new com.excrele.events.RankPostAddEvent(
+            targetPlayer, oldRank, rank, "API", "API call");
+        getServer().getPluginManager().callEvent(postEvent);
+        
+        return true;
     }
 
     /**
@@ -1151,7 +1226,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         if (rank == null || rank.trim().isEmpty()) {
             return false;
         }
-        return ranksConfig.contains("ranks." + rank.trim());
+        return snapshotManager.getSnapshot().getRank(rank.trim()) != null;
     }
 
     /**
@@ -1161,7 +1236,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return The rank prefix, or empty string if not set
      */
     public String getRankPrefix(String rank) {
-        return ranksConfig.getString("ranks." + rank + ".info.prefix", "");
+        RankSnapshot rankInfo = snapshotManager.getSnapshot().getRank(rank);
+        return rankInfo != null ? rankInfo.getPrefix() : "";
     }
 
     /**
@@ -1171,7 +1247,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return The rank suffix, or empty string if not set
      */
     public String getRankSuffix(String rank) {
-        return ranksConfig.getString("ranks." + rank + ".info.suffix", "");
+        RankSnapshot rankInfo = snapshotManager.getSnapshot().getRank(rank);
+        return rankInfo != null ? rankInfo.getSuffix() : "";
     }
 
     /**
@@ -1181,10 +1258,11 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return List of permissions, or empty list if rank doesn't exist
      */
     public List<String> getRankPermissions(String rank) {
-        if (!rankExists(rank)) {
+        RankSnapshot rankInfo = snapshotManager.getSnapshot().getRank(rank);
+        if (rankInfo == null) {
             return new ArrayList<>();
         }
-        return ranksConfig.getStringList("ranks." + rank + ".permissions");
+        return new ArrayList<>(rankInfo.getPermissions());
     }
 
     /**
@@ -1194,10 +1272,11 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return List of inherited rank names, or empty list if none
      */
     public List<String> getRankInheritance(String rank) {
-        if (!rankExists(rank)) {
+        RankSnapshot rankInfo = snapshotManager.getSnapshot().getRank(rank);
+        if (rankInfo == null) {
             return new ArrayList<>();
         }
-        return ranksConfig.getStringList("ranks." + rank + ".inheritance");
+        return new ArrayList<>(rankInfo.getInheritance());
     }
 
     /**
@@ -1206,12 +1285,41 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      * @return List of all rank names, or empty list if none
      */
     public List<String> getAllRanks() {
-        if (!ranksConfig.contains("ranks")) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(ranksConfig.getConfigurationSection("ranks").getKeys(false));
+        return new ArrayList<>(snapshotManager.getSnapshot().getRanks().keySet());
     }
 
+    /**
+     * Get the number of players assigned to a rank (API method).
+     *
+     * @param rank The rank name
+     * @return Number of players with this rank in ranks.yml
+     */
+    public int getRankMemberCount(String rank) {
+        return snapshotManager.getMemberCount(rank);
+    }
+    
+    /**
+     * Get all players assigned to a rank (API method).
+     *
+     * @param rank The rank name
+     * @return Read-only set of player UUIDs, or empty set if none
+     */
+    public Set<UUID> getRankMembers(String rank) {
+        return snapshotManager.getMembers(rank);
+    }
+    
+    /**
+     * Get one page of players assigned to a rank (API method).
+     *
+     * @param rank     The rank name
+     * @param page     Zero-based page number
+     * @param pageSize Players per page
+     * @return Player UUIDs on that page, or empty list past the end
+     */
+    public List<UUID> getRankMembers(String rank, int page, int pageSize) {
+        return snapshotManager.getMembers(rank, page, pageSize);
+    }
+    
     /**
      * Reload the ranks configuration (API method).
      *
@@ -1219,9 +1327,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
      */
     public boolean reloadRanksConfig() {
         try {
-            ranksConfig = YamlConfiguration.loadConfiguration(configFile);
-            getServer().getOnlinePlayers().forEach(this::loadPlayerPermissions);
-            return true;
+            return rankReloadManager.reloadAllNow(getServer().getConsoleSender()) != null;
         } catch (Exception e) {
             getLogger().severe("Error reloading ranks.yml: " + e.getMessage());
             return false;
@@ -1338,28 +1444,14 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             String subcommand = args[0].toLowerCase();
             
             if (subcommand.equals("add") || subcommand.equals("assign")) {
-                // Complete player names
+                // Complete names of every known player, not only online ones
                 if (sender.hasPermission("excreleperms.add")) {
-                    List<String> players = new ArrayList<>();
-                    String input = args[1].toLowerCase();
-                    for (Player player : getServer().getOnlinePlayers()) {
-                        if (player.getName().toLowerCase().startsWith(input)) {
-                            players.add(player.getName());
-                        }
-                    }
-                    return players;
+                    return playerNameIndex.complete(args[1], MAX_NAME_COMPLETIONS);
                 }
             } else if (subcommand.equals("promote") || subcommand.equals("demote")) {
-                // Complete player names
+                // Complete names of every known player, not only online ones
                 if (sender.hasPermission("excreleperms.promote") || sender.hasPermission("excreleperms.demote")) {
-                    List<String> players = new ArrayList<>();
-                    String input = args[1].toLowerCase();
-                    for (Player player : getServer().getOnlinePlayers()) {
-                        if (player.getName().toLowerCase().startsWith(input)) {
-                            players.add(player.getName());
-                        }
-                    }
-                    return players;
+                    return playerNameIndex.complete(args[1], MAX_NAME_COMPLETIONS);
                 }
             } else if (subcommand.equals("info")) {
                 // Complete rank names
@@ -1374,16 +1466,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     return ranks;
                 }
             } else if (subcommand.equals("check")) {
-                // Complete player names
+                // Complete names of every known player, not only online ones
                 if (sender.hasPermission("excreleperms.check")) {
-                    List<String> players = new ArrayList<>();
-                    String input = args[1].toLowerCase();
-                    for (Player player : getServer().getOnlinePlayers()) {
-                        if (player.getName().toLowerCase().startsWith(input)) {
-                            players.add(player.getName());
-                        }
-                    }
-                    return players;
+                    return playerNameIndex.complete(args[1], MAX_NAME_COMPLETIONS);
                 }
             }
         } else if (args.length == 3) {
@@ -1425,6 +1510,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     if ("add".startsWith(input)) options.add("add");
                     if ("list".startsWith(input)) options.add("list");
                     if ("cancel".startsWith(input)) options.add("cancel");
+                    if ("grant".startsWith(input)) options.add("grant");
+                    if ("grants".startsWith(input)) options.add("grants");
+                    if ("revoke".startsWith(input)) options.add("revoke");
                     return options;
                 }
             } else if (subcommand.equals("track")) {
@@ -1461,6 +1549,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     String input = args[2].toLowerCase();
                     if ("split".startsWith(input)) options.add("split");
                     if ("merge".startsWith(input)) options.add("merge");
+                    if ("shard".startsWith(input)) options.add("shard");
+                    if ("unshard".startsWith(input)) options.add("unshard");
                     return options;
                 }
             } else if (subcommand.equals("logs")) {
@@ -1786,11 +1876,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             try {
                 playerUUID = UUID.fromString(playerName);
             } catch (IllegalArgumentException e) {
-                OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                if (offlinePlayer.hasPlayedBefore()) {
-                    playerUUID = offlinePlayer.getUniqueId();
-                } else {
-                    sender.sendMessage(ChatColor.RED + "Player not found!");
+                playerUUID = playerNameIndex.getUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
                     return true;
                 }
             }
@@ -1802,19 +1890,24 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             return true;
         }
         
-        List<YAMLHistoryManager.HistoryEntry> history = historyManager.getPlayerHistory(playerUUID);
-        
-        if (history.isEmpty()) {
-            sender.sendMessage(ChatColor.YELLOW + "No history found for " + playerName);
-            return true;
-        }
-        
-        sender.sendMessage(ChatColor.GOLD + "=== Rank History: " + playerName + " ===");
-        for (YAMLHistoryManager.HistoryEntry entry : history) {
-            sender.sendMessage(ChatColor.YELLOW + entry.getTimestamp() + ": " + 
-                entry.getOldRank() + " → " + entry.getNewRank() + 
-                " (by " + entry.getSender() + ")");
-        }
+        historyManager.getPlayerHistory(playerUUID).whenComplete((history, error) -> runIfEnabled(() -> {
+            if (error != null) {
+                getLogger().warning("Failed to load history for " + playerName + ": " + error.getMessage());
+                sender.sendMessage(ChatColor.RED + "Failed to load history for " + playerName);
+                return;
+            }
+            if (history.isEmpty()) {
+                sender.sendMessage(ChatColor.YELLOW + "No history found for " + playerName);
+                return;
+            }
+            
+            sender.sendMessage(ChatColor.GOLD + "=== Rank History: " + playerName + " ===");
+            for (YAMLHistoryManager.HistoryEntry entry : history) {
+                sender.sendMessage(ChatColor.YELLOW + entry.getTimestamp() + ": " + 
+                    entry.getOldRank() + " → " + entry.getNewRank() + 
+                    " (by " + entry.getSender() + ")");
+            }
+        }));
         
         return true;
     }
@@ -1844,6 +1937,22 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         return yamlFileManager;
     }
     
+    public com.excrele.managers.PlayerNameIndex getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+    
+    public com.excrele.managers.RankReloadManager getRankReloadManager() {
+        return rankReloadManager;
+    }
+    
+    public com.excrele.managers.WorkScheduler getWorkScheduler() {
+        return workScheduler;
+    }
+    
+    public com.excrele.storage.StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+    
     public YAMLBackupManager getBackupManager() {
         return backupManager;
     }
@@ -1984,6 +2093,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         if (rankManager.editRank(rankName, property, value)) {
             sender.sendMessage(ChatColor.GREEN + "Rank '" + rankName + "' updated!");
             ranksConfig = yamlFileManager.reloadConfig("ranks.yml");
+            if (property.equalsIgnoreCase("priority")) {
+                tabListManager.refreshRank(rankName);
+            }
         } else {
             sender.sendMessage(ChatColor.RED + "Failed to edit rank!");
         }
@@ -2012,7 +2124,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
     
     private boolean handleTemporaryRankCommand(CommandSender sender, String[] args) {
         if (args.length < 2) {
-            sender.sendMessage(ChatColor.RED + "Usage: /rank temp <assign|list|cancel> [args]");
+            sender.sendMessage(ChatColor.RED + "Usage: /rank temp <assign|list|cancel|grant|grants|revoke> [args]");
             return true;
         }
         
@@ -2037,11 +2149,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     try {
                         playerUUID = UUID.fromString(playerName);
                     } catch (IllegalArgumentException e) {
-                        OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                        if (offlinePlayer.hasPlayedBefore()) {
-                            playerUUID = offlinePlayer.getUniqueId();
-                        } else {
-                            sender.sendMessage(ChatColor.RED + "Player not found!");
+                        playerUUID = playerNameIndex.getUUID(playerName);
+                        if (playerUUID == null) {
+                            sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
                             return true;
                         }
                     }
@@ -2053,29 +2163,22 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     return true;
                 }
                 
-                // Store current rank and assign temp rank
-                ranksConfig.set("players." + playerUUID + ".rank", rank);
-                saveConfigFileSync();
-                
+                // Granted on top of the player's rank, which is left alone
                 if (temporaryRankManager.assignTemporaryRank(playerUUID, rank, duration)) {
                     sender.sendMessage(ChatColor.GREEN + "Temporary rank assigned to " + playerName + " for " + durationStr);
-                    if (onlinePlayer != null) {
-                        loadPlayerPermissions(onlinePlayer);
-                    }
                 } else {
                     sender.sendMessage(ChatColor.RED + "Failed to assign temporary rank!");
                 }
                 return true;
                 
             case "list":
-                Map<UUID, TemporaryRankManager.TemporaryRankInfo> tempRanks = temporaryRankManager.getAllTemporaryRanks();
+                Map<UUID, List<TemporaryRankManager.TemporaryGrant>> tempRanks = temporaryRankManager.getAllTemporaryRanks();
                 if (tempRanks.isEmpty()) {
                     sender.sendMessage(ChatColor.YELLOW + "No active temporary ranks.");
                 } else {
                     sender.sendMessage(ChatColor.GOLD + "=== Active Temporary Ranks ===");
-                    for (Map.Entry<UUID, TemporaryRankManager.TemporaryRankInfo> entry : tempRanks.entrySet()) {
+                    for (Map.Entry<UUID, List<TemporaryRankManager.TemporaryGrant>> entry : tempRanks.entrySet()) {
                         UUID tempPlayerUUID = entry.getKey();
-                        TemporaryRankManager.TemporaryRankInfo info = entry.getValue();
                         
                         String tempPlayerName = tempPlayerUUID.toString();
                         Player tempOnlinePlayer = getServer().getPlayer(tempPlayerUUID);
@@ -2088,20 +2191,23 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                             }
                         }
                         
-                        long remaining = info.getRemainingTime();
-                        long days = remaining / (24L * 60 * 60 * 1000);
-                        long hours = (remaining % (24L * 60 * 60 * 1000)) / (60 * 60 * 1000);
-                        long minutes = (remaining % (60 * 60 * 1000)) / (60 * 1000);
-                        
-                        String timeStr = "";
-                        if (days > 0) timeStr += days + "d ";
-                        if (hours > 0) timeStr += hours + "h ";
-                        if (minutes > 0) timeStr += minutes + "m ";
-                        if (timeStr.isEmpty()) timeStr = "< 1m";
-                        
-                        sender.sendMessage(ChatColor.YELLOW + tempPlayerName + ": " + 
-                            ChatColor.GREEN + info.getRank() + ChatColor.YELLOW + 
-                            " (from " + info.getOriginalRank() + ", expires in " + timeStr.trim() + ")");
+                        for (TemporaryRankManager.TemporaryGrant grant : entry.getValue()) {
+                            long remaining = grant.getRemainingTime();
+                            long days = remaining / (24L * 60 * 60 * 1000);
+                            long hours = (remaining % (24L * 60 * 60 * 1000)) / (60 * 60 * 1000);
+                            long minutes = (remaining % (60 * 60 * 1000)) / (60 * 1000);
+                            
+                            String timeStr = "";
+                            if (days > 0) timeStr += days + "d ";
+                            if (hours > 0) timeStr += hours + "h ";
+                            if (minutes > 0) timeStr += minutes + "m ";
+                            if (timeStr.isEmpty()) timeStr = "< 1m";
+                            
+                            sender.sendMessage(ChatColor.YELLOW + tempPlayerName + ": " + 
+                                ChatColor.GREEN + grant.getNode() + ChatColor.YELLOW + 
+                                (grant.getWorld() != null ? " in " + grant.getWorld() : "") +
+                                " (expires in " + timeStr.trim() + ")");
+                        }
                     }
                 }
                 return true;
@@ -2120,11 +2226,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     try {
                         playerUUID = UUID.fromString(playerName);
                     } catch (IllegalArgumentException e) {
-                        OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                        if (offlinePlayer.hasPlayedBefore()) {
-                            playerUUID = offlinePlayer.getUniqueId();
-                        } else {
-                            sender.sendMessage(ChatColor.RED + "Player not found!");
+                        playerUUID = playerNameIndex.getUUID(playerName);
+                        if (playerUUID == null) {
+                            sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
                             return true;
                         }
                     }
@@ -2132,20 +2236,142 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 
                 if (temporaryRankManager.cancelTemporaryRank(playerUUID)) {
                     sender.sendMessage(ChatColor.GREEN + "Temporary rank cancelled for " + playerName);
-                    if (onlinePlayer != null) {
-                        loadPlayerPermissions(onlinePlayer);
-                    }
                 } else {
                     sender.sendMessage(ChatColor.RED + "Player doesn't have a temporary rank!");
                 }
                 return true;
                 
+            case "grant":
+                if (args.length < 5) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /rank temp grant <player> <rank:<name>|[-]permission> <duration> [world]");
+                    sender.sendMessage(ChatColor.YELLOW + "Grants stack on top of the player's rank and expire on their own.");
+                    return true;
+                }
+                
+                playerName = args[2];
+                playerUUID = findPlayerUUID(playerName);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
+                    return true;
+                }
+                
+                duration = temporaryRankManager.parseDuration(args[4]);
+                if (duration <= 0) {
+                    sender.sendMessage(ChatColor.RED + "Invalid duration format!");
+                    return true;
+                }
+                
+                String granted = args[3];
+                String world = args.length > 5 ? args[5] : null;
+                TemporaryRankManager.TemporaryGrant grant;
+                if (granted.toLowerCase().startsWith("rank:")) {
+                    String grantedRank = granted.substring(5);
+                    if (!rankExists(grantedRank)) {
+                        sender.sendMessage(ChatColor.RED + "Rank '" + grantedRank + "' does not exist!");
+                        return true;
+                    }
+                    grant = new TemporaryRankManager.TemporaryGrant(TemporaryRankManager.TemporaryGrant.Kind.RANK,
+                        grantedRank, true, world, System.currentTimeMillis() + duration);
+                } else {
+                    boolean value = !granted.startsWith("-");
+                    grant = new TemporaryRankManager.TemporaryGrant(TemporaryRankManager.TemporaryGrant.Kind.PERMISSION,
+                        value ? granted : granted.substring(1), value, world, System.currentTimeMillis() + duration);
+                }
+                temporaryRankManager.addTemporaryGrant(playerUUID, grant);
+                sender.sendMessage(ChatColor.GREEN + "Granted " + granted + " to " + playerName + " for " + args[4]
+                    + (world != null ? " in " + world : "") + ".");
+                return true;
+            
+            case "grants":
+                if (args.length < 3) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /rank temp grants <player>");
+                    return true;
+                }
+                
+                playerUUID = findPlayerUUID(args[2]);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
+                    return true;
+                }
+                
+                List<TemporaryRankManager.TemporaryGrant> grants = temporaryRankManager.getTemporaryGrants(playerUUID);
+                if (grants.isEmpty()) {
+                    sender.sendMessage(ChatColor.YELLOW + args[2] + " has no timed grants.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.GOLD + "=== Timed Grants: " + args[2] + " ===");
+                for (int i = 0; i < grants.size(); i++) {
+                    TemporaryRankManager.TemporaryGrant entry = grants.get(i);
+                    String node = entry.getKind() == TemporaryRankManager.TemporaryGrant.Kind.RANK
+                        ? "rank " + entry.getNode() : (entry.getValue() ? "" : "-") + entry.getNode();
+                    long minutes = entry.getRemainingTime() / (60 * 1000);
+                    sender.sendMessage(ChatColor.YELLOW + "" + (i + 1) + ". " + ChatColor.GREEN + node
+                        + ChatColor.YELLOW + (entry.getWorld() != null ? " in " + entry.getWorld() : "")
+                        + " (expires in " + (minutes > 0 ? minutes + "m" : "< 1m") + ")");
+                }
+                return true;
+            
+            case "revoke":
+                if (args.length < 4) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /rank temp revoke <player> <number|all>");
+                    return true;
+                }
+                
+                playerUUID = findPlayerUUID(args[2]);
+                if (playerUUID == null) {
+                    sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
+                    return true;
+                }
+                
+                if (args[3].equalsIgnoreCase("all")) {
+                    int removed = temporaryRankManager.clearTemporaryGrants(playerUUID);
+                    sender.sendMessage(ChatColor.GREEN + "Removed " + removed + " timed grant(s) from " + args[2] + ".");
+                    return true;
+                }
+                List<TemporaryRankManager.TemporaryGrant> current = temporaryRankManager.getTemporaryGrants(playerUUID);
+                int index;
+                try {
+                    index = Integer.parseInt(args[3]) - 1;
+                } catch (NumberFormatException e) {
+                    index = -1;
+                }
+                if (index < 0 || index >= current.size()
+                        || !temporaryRankManager.removeTemporaryGrant(playerUUID, current.get(index))) {
+                    sender.sendMessage(ChatColor.RED + "No such grant! See /rank temp grants " + args[2]);
+                    return true;
+                }
+                sender.sendMessage(ChatColor.GREEN + "Timed grant removed from " + args[2] + ".");
+                return true;
+            
             default:
                 sender.sendMessage(ChatColor.RED + "Unknown temp subcommand!");
                 return true;
         }
     }
     
+    /**
+     * Tell the sender a player wasn't found, and that this may change while the name
+     * index is still being built on first start.
+     */
+    private void sendPlayerNotFound(CommandSender sender, String message) {
+        sender.sendMessage(message);
+        if (playerNameIndex.isIndexing()) {
+            sender.sendMessage(ChatColor.YELLOW + "Player names are still being indexed, try again in a moment.");
+        }
+    }
+    
+    private UUID findPlayerUUID(String playerName) {
+        Player onlinePlayer = getServer().getPlayer(playerName);
+        if (onlinePlayer != null) {
+            return onlinePlayer.getUniqueId();
+        }
+        try {
+            return UUID.fromString(playerName);
+        } catch (IllegalArgumentException e) {
+            return playerNameIndex.getUUID(playerName);
+        }
+    }
+    
     private boolean handleTrackCommand(CommandSender sender, String[] args) {
         if (args.length < 2) {
             sender.sendMessage(ChatColor.RED + "Usage: /rank track <create|list|delete> [args]");
@@ -2260,8 +2486,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 return true;
                 
             case "clear":
-                ranksConfig.set("ranks." + rankName + ".permissions", new ArrayList<>());
-                if (saveConfigFileSync()) {
+                if (rankManager.clearPermissions(rankName)) {
                     sender.sendMessage(ChatColor.GREEN + "All permissions cleared for rank '" + rankName + "'!");
                 } else {
                     sender.sendMessage(ChatColor.RED + "Failed to clear permissions!");
@@ -2332,7 +2557,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
     
     private boolean handleFilesCommand(CommandSender sender, String[] args) {
         if (args.length < 2) {
-            sender.sendMessage(ChatColor.RED + "Usage: /rank files <split|merge>");
+            sender.sendMessage(ChatColor.RED + "Usage: /rank files <split|merge|shard|unshard>");
             return true;
         }
         
@@ -2360,6 +2585,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                         if (success) {
                             sender.sendMessage(ChatColor.GREEN + "Files merged successfully! Using single file mode.");
                             ranksConfig = yamlFileManager.reloadConfig("ranks.yml");
+                            snapshotManager.reload();
+                            rankManager.rebuildRankGraph();
+                            rankManager.getFormatCache().invalidateAll();
                         } else {
                             sender.sendMessage(ChatColor.RED + "Failed to merge files!");
                         }
@@ -2367,6 +2595,38 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 });
                 return true;
                 
+            case "shard":
+                if (yamlFileManager.isUseShardedPlayers()) {
+                    sender.sendMessage(ChatColor.YELLOW + "Player data is already sharded.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Moving player data into sharded files...");
+                java.util.Set<String> shardFiles = new java.util.HashSet<>();
+                for (String fileName : PLAYER_FILES) {
+                    org.bukkit.configuration.ConfigurationSection players = getPlayersSection(fileName);
+                    if (players != null) {
+                        shardFiles.addAll(com.excrele.yaml.ShardedPlayerStore.getShardFiles(players));
+                    }
+                }
+                // Parse the shards in the background; the entries are moved on the main thread
+                yamlFileManager.getIOExecutor().submit(() -> {
+                    yamlFileManager.getPlayerStore().preload(shardFiles);
+                    return null;
+                }).whenComplete((ignored, error) -> runIfEnabled(() -> shardPlayerFiles(sender)));
+                return true;
+            
+            case "unshard":
+                if (!yamlFileManager.isUseShardedPlayers()) {
+                    sender.sendMessage(ChatColor.YELLOW + "Player data is not sharded.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Moving player data back into ranks.yml...");
+                yamlFileManager.getIOExecutor().submit(() -> {
+                    yamlFileManager.getPlayerStore().preloadExisting();
+                    return null;
+                }).whenComplete((ignored, error) -> runIfEnabled(() -> unshardPlayerFiles(sender)));
+                return true;
+            
             default:
                 sender.sendMessage(ChatColor.RED + "Unknown files action!");
                 return true;
@@ -2392,11 +2652,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                         try {
                             finalPlayerUUID = UUID.fromString(playerName);
                         } catch (IllegalArgumentException e) {
-                            OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-                            if (offlinePlayer.hasPlayedBefore()) {
-                                finalPlayerUUID = offlinePlayer.getUniqueId();
-                            } else {
-                                sender.sendMessage(ChatColor.RED + "Player not found!");
+                            finalPlayerUUID = playerNameIndex.getUUID(playerName);
+                            if (finalPlayerUUID == null) {
+                                sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
                                 return true;
                             }
                         }
@@ -2601,6 +2859,106 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         }
     }
     
+    private org.bukkit.configuration.ConfigurationSection getPlayersSection(String fileName) {
+        if (!new File(getDataFolder(), fileName).exists()) {
+            return null;
+        }
+        return yamlFileManager.getConfig(fileName).getConfigurationSection("players");
+    }
+    
+    /**
+     * Move the player entries into the shards and switch to sharded mode. Runs on the
+     * main thread, so no rank change can land in between; only the writes are async.
+     */
+    private void shardPlayerFiles(CommandSender sender) {
+        List<CompletableFuture<Boolean>> writes = new ArrayList<>();
+        int moved = 0;
+        try {
+            com.excrele.yaml.ShardedPlayerStore playerStore = yamlFileManager.getPlayerStore();
+            for (String fileName : PLAYER_FILES) {
+                org.bukkit.configuration.ConfigurationSection players = getPlayersSection(fileName);
+                if (players == null) {
+                    continue;
+                }
+                moved += players.getKeys(false).size();
+                writes.addAll(playerStore.importPlayers(players));
+                FileConfiguration source = yamlFileManager.getConfig(fileName);
+                source.set("players", null);
+                writes.add(yamlFileManager.saveConfig(fileName, source));
+            }
+            
+            // Enable sharded player mode
+            yamlFileManager.setUseShardedPlayers(true);
+            ranksConfig = yamlFileManager.getConfig("ranks.yml");
+        } catch (Exception e) {
+            getLogger().severe("Failed to shard player files: " + e.getMessage());
+            sender.sendMessage(ChatColor.RED + "Failed to shard player data!");
+            return;
+        }
+        
+        int count = moved;
+        whenWritten(writes, success -> {
+            if (success) {
+                getLogger().info("Moved " + count + " players into sharded player files");
+                sender.sendMessage(ChatColor.GREEN + "Player data sharded successfully! Using players/00.yml to players/ff.yml.");
+            } else {
+                sender.sendMessage(ChatColor.RED + "Sharded mode is active, but some files failed to save. Check the console!");
+            }
+        });
+    }
+    
+    /**
+     * Move the shards back into ranks.yml and leave sharded mode. Runs on the main
+     * thread; only the writes and deletions are async.
+     */
+    private void unshardPlayerFiles(CommandSender sender) {
+        List<CompletableFuture<Boolean>> writes = new ArrayList<>();
+        try {
+            com.excrele.yaml.ShardedPlayerStore playerStore = yamlFileManager.getPlayerStore();
+            org.bukkit.configuration.ConfigurationSection players = playerStore.exportPlayers().getConfigurationSection("players");
+            
+            FileConfiguration ranksConfig = yamlFileManager.getConfig("ranks.yml");
+            if (players != null) {
+                ranksConfig.set("players", players);
+            }
+            writes.add(yamlFileManager.saveConfig("ranks.yml", ranksConfig));
+            this.ranksConfig = ranksConfig;
+            
+            // Disable sharded player mode, then drop the shards
+            yamlFileManager.setUseShardedPlayers(false);
+            writes.addAll(playerStore.deleteShardsAsync());
+        } catch (Exception e) {
+            getLogger().severe("Failed to unshard player files: " + e.getMessage());
+            sender.sendMessage(ChatColor.RED + "Failed to unshard player data!");
+            return;
+        }
+        
+        whenWritten(writes, success -> sender.sendMessage(success
+            ? ChatColor.GREEN + "Player data moved back into ranks.yml!"
+            : ChatColor.RED + "Player data moved back into ranks.yml, but some files failed to save or delete. Check the console!"));
+    }
+    
+    /**
+     * Run a callback on the main thread once every write finished, telling it whether
+     * they all succeeded.
+     */
+    private void whenWritten(List<CompletableFuture<Boolean>> writes, java.util.function.Consumer<Boolean> callback) {
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            boolean success = error == null;
+            for (CompletableFuture<Boolean> write : writes) {
+                success &= !write.isCompletedExceptionally() && write.join();
+            }
+            boolean result = success;
+            runIfEnabled(() -> callback.accept(result));
+        });
+    }
+    
+    private void runIfEnabled(Runnable task) {
+        if (isEnabled()) {
+            getServer().getScheduler().runTask(this, task);
+        }
+    }
+    
     private boolean handleCommentCommand(CommandSender sender, String[] args) {
         if (args.length < 3) {
             sender.sendMessage(ChatColor.RED + "Usage: /rank comment <add|remove|view> <rank> [comment]");
@@ -2681,8 +3039,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 sender.sendMessage(ChatColor.GREEN + "Priority set to " + priority + " for rank '" + rankName + "'!");
                 ranksConfig = yamlFileManager.reloadConfig("ranks.yml");
                 
-                // Update tab list for all online players
-                sortTabListByPriority();
+                // Move online members to the team for the new priority
+                tabListManager.refreshRank(rankName);
             } else {
                 sender.sendMessage(ChatColor.RED + "Failed to set priority!");
             }
@@ -2703,89 +3061,101 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         }
         
         String action = args[1].toLowerCase();
+        if (!action.equals("add") && !action.equals("promote") && !action.equals("demote")) {
+            sender.sendMessage(ChatColor.RED + "Unknown bulk action! Use: add, promote, or demote");
+            return true;
+        }
         
         // Check if last argument is a file
         String lastArg = args[args.length - 1];
-        final List<String> finalPlayerNames;
+        CompletableFuture<List<String>> playerNames;
         if (lastArg.endsWith(".txt") || lastArg.endsWith(".list")) {
             File playerFile = new File(getDataFolder(), "lists/" + lastArg);
             if (playerFile.exists()) {
-                finalPlayerNames = bulkOperationsManager.loadPlayerListFromFile(playerFile);
-                sender.sendMessage(ChatColor.YELLOW + "Loaded " + finalPlayerNames.size() + " players from file.");
+                // Lists can be long; read them off the main thread
+                playerNames = yamlFileManager.getIOExecutor().submit(() -> bulkOperationsManager.loadPlayerListFromFile(playerFile));
             } else {
                 sender.sendMessage(ChatColor.RED + "Player list file not found: " + lastArg);
                 return true;
             }
         } else {
             // Get players from arguments
-            finalPlayerNames = new ArrayList<>();
+            List<String> names = new ArrayList<>();
             int startIdx = action.equals("add") ? 3 : 2;
             for (int i = startIdx; i < args.length; i++) {
-                finalPlayerNames.add(args[i]);
+                names.add(args[i]);
             }
+            playerNames = CompletableFuture.completedFuture(names);
         }
         
-        if (finalPlayerNames.isEmpty()) {
-            sender.sendMessage(ChatColor.RED + "No players specified!");
-            return true;
-        }
-        
-        sender.sendMessage(ChatColor.YELLOW + "Processing " + finalPlayerNames.size() + " player(s)...");
-        
-        getServer().getScheduler().runTaskAsynchronously(this, () -> {
-            com.excrele.managers.BulkOperationsManager.BulkResult result;
+        playerNames.whenComplete((names, error) -> runIfEnabled(() -> {
+            if (error != null) {
+                getLogger().warning("Failed to read player list " + lastArg + ": " + error.getMessage());
+                sender.sendMessage(ChatColor.RED + "Failed to read the player list: " + error.getMessage());
+                return;
+            }
+            if (names.isEmpty()) {
+                sender.sendMessage(ChatColor.RED + "No players specified!");
+                return;
+            }
             
+            sender.sendMessage(ChatColor.YELLOW + "Processing " + names.size() + " player(s)...");
+            
+            // Completed on the main thread
+            CompletableFuture<com.excrele.managers.BulkOperationsManager.BulkResult> future;
             switch (action) {
                 case "add":
-                    String rank = args[2];
-                    result = bulkOperationsManager.bulkAddRank(sender, rank, finalPlayerNames);
+                    future = bulkOperationsManager.bulkAddRank(sender, args[2], names);
                     break;
                 case "promote":
-                    result = bulkOperationsManager.bulkPromote(sender, finalPlayerNames, trackManager);
-                    break;
-                case "demote":
-                    result = bulkOperationsManager.bulkDemote(sender, finalPlayerNames, trackManager);
+                    future = bulkOperationsManager.bulkPromote(sender, names, trackManager);
                     break;
                 default:
-                    getServer().getScheduler().runTask(this, () -> {
-                        sender.sendMessage(ChatColor.RED + "Unknown bulk action! Use: add, promote, or demote");
-                    });
-                    return;
+                    future = bulkOperationsManager.bulkDemote(sender, names, trackManager);
+                    break;
             }
-            
-            getServer().getScheduler().runTask(this, () -> {
-                sender.sendMessage(ChatColor.GOLD + "=== Bulk Operation Results ===");
-                sender.sendMessage(ChatColor.GREEN + "Success: " + result.getSuccesses().size());
-                if (!result.getSuccesses().isEmpty() && result.getSuccesses().size() <= 10) {
-                    for (String success : result.getSuccesses()) {
-                        sender.sendMessage(ChatColor.GREEN + "  ✓ " + success);
-                    }
-                } else if (result.getSuccesses().size() > 10) {
-                    sender.sendMessage(ChatColor.GREEN + "  (Showing first 10)");
-                    for (int i = 0; i < 10; i++) {
-                        sender.sendMessage(ChatColor.GREEN + "  ✓ " + result.getSuccesses().get(i));
-                    }
-                }
-                
-                if (!result.getSkipped().isEmpty()) {
-                    sender.sendMessage(ChatColor.YELLOW + "Skipped: " + result.getSkipped().size());
-                    for (String skip : result.getSkipped()) {
-                        sender.sendMessage(ChatColor.YELLOW + "  - " + skip);
-                    }
-                }
-                
-                if (!result.getErrors().isEmpty()) {
-                    sender.sendMessage(ChatColor.RED + "Errors: " + result.getErrors().size());
-                    for (String error : result.getErrors()) {
-                        sender.sendMessage(ChatColor.RED + "  ✗ " + error);
-                    }
+            future.whenComplete((result, failure) -> {
+                if (failure == null) {
+                    showBulkResult(sender, result);
+                    return;
                 }
+                // Failures can complete the future off the main thread
+                runIfEnabled(() -> {
+                    getLogger().warning("Bulk " + action + " failed: " + failure.getMessage());
+                    sender.sendMessage(ChatColor.RED + "Bulk operation failed: " + failure.getMessage());
+                });
             });
-        });
+        }));
         
         return true;
     }
     
+    private void showBulkResult(CommandSender sender, com.excrele.managers.BulkOperationsManager.BulkResult result) {
+        sender.sendMessage(ChatColor.GOLD + "=== Bulk Operation Results ===");
+        sender.sendMessage(ChatColor.GREEN + "Success: " + result.getSuccesses().size());
+        showFirst(sender, ChatColor.GREEN, "✓", result.getSuccesses());
+        
+        if (!result.getSkipped().isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "Skipped: " + result.getSkipped().size());
+            showFirst(sender, ChatColor.YELLOW, "-", result.getSkipped());
+        }
+        
+        if (!result.getErrors().isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "Errors: " + result.getErrors().size());
+            showFirst(sender, ChatColor.RED, "✗", result.getErrors());
+        }
+    }
+    
+    private void showFirst(CommandSender sender, ChatColor color, String symbol, List<String> lines) {
+        // Lists from files can hold thousands of players
+        if (lines.size() > 10) {
+            sender.sendMessage(color + "  (Showing first 10)");
+        }
+        for (int i = 0; i < Math.min(10, lines.size()); i++) {
+            sender.sendMessage(color + "  " + symbol + " " + lines.get(i));
+        }
+    }
+    
     private boolean handleHelpCommand(CommandSender sender, String[] args) {
         if (args.length > 1) {
             // Detailed help for specific command
@@ -2872,8 +3242,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 List<String> tags = ranksConfig.getStringList("ranks." + rankName + ".tags");
                 if (!tags.contains(tag)) {
                     tags.add(tag);
-                    ranksConfig.set("ranks." + rankName + ".tags", tags);
-                    yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+                    rankManager.setRankSetting(rankName, "tags", tags);
                     sender.sendMessage(ChatColor.GREEN + "Tag '" + tag + "' added to rank '" + rankName + "'!");
                 } else {
                     sender.sendMessage(ChatColor.YELLOW + "Tag already exists!");
@@ -2888,8 +3257,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 tag = args[3];
                 tags = ranksConfig.getStringList("ranks." + rankName + ".tags");
                 if (tags.remove(tag)) {
-                    ranksConfig.set("ranks." + rankName + ".tags", tags);
-                    yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+                    rankManager.setRankSetting(rankName, "tags", tags);
                     sender.sendMessage(ChatColor.GREEN + "Tag '" + tag + "' removed from rank '" + rankName + "'!");
                 } else {
                     sender.sendMessage(ChatColor.YELLOW + "Tag not found!");
@@ -2935,9 +3303,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             color = convertHexToColorCode(color);
         }
         
-        FileConfiguration ranksConfig = yamlFileManager.getConfig("ranks.yml");
-        ranksConfig.set("ranks." + rankName + ".color", color);
-        yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+        rankManager.setRankSetting(rankName, "color", color);
         
         sender.sendMessage(ChatColor.GREEN + "Color set for rank '" + rankName + "'!");
         sender.sendMessage(ChatColor.translateAlternateColorCodes('&', color + "Preview: " + color + rankName + ChatColor.RESET));
@@ -2986,8 +3352,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                 case "playtime":
                 case "money":
                 case "permission":
-                    ranksConfig.set("ranks." + rankName + ".requirements." + type, value);
-                    yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+                    rankManager.setRankSetting(rankName, "requirements." + type, value);
                     sender.sendMessage(ChatColor.GREEN + "Requirement set!");
                     break;
                 default:
@@ -3030,9 +3395,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             return true;
         }
         
-        FileConfiguration ranksConfig = yamlFileManager.getConfig("ranks.yml");
-        ranksConfig.set("ranks." + rankName + ".expiry-duration", durationStr);
-        yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+        rankManager.setRankSetting(rankName, "expiry-duration", durationStr);
         
         sender.sendMessage(ChatColor.GREEN + "Expiry duration set for rank '" + rankName + "'!");
         
@@ -3111,6 +3474,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             migrationManager.migrateFromYAML(sourceFile, pluginType);
         
         if (result.isSuccess()) {
+            rankManager.rebuildRankGraph();
+            rankManager.getFormatCache().invalidateAll();
             sender.sendMessage(ChatColor.GREEN + "Migration completed!");
             sender.sendMessage(ChatColor.YELLOW + "Migrated: " + result.getMigrated().size() + " items");
             for (String item : result.getMigrated()) {
@@ -3141,11 +3506,9 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         if (onlinePlayer != null) {
             playerUUID = onlinePlayer.getUniqueId();
         } else {
-            OfflinePlayer offlinePlayer = getServer().getOfflinePlayer(playerName);
-            if (offlinePlayer.hasPlayedBefore()) {
-                playerUUID = offlinePlayer.getUniqueId();
-            } else {
-                sender.sendMessage(ChatColor.RED + "Player not found!");
+            playerUUID = playerNameIndex.getUUID(playerName);
+            if (playerUUID == null) {
+                sendPlayerNotFound(sender, ChatColor.RED + "Player not found!");
                 return true;
             }
         }
@@ -3202,9 +3565,25 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
         for (Map.Entry<String, Long> entry : counters.entrySet()) {
             sender.sendMessage(ChatColor.GRAY + "  " + entry.getKey() + ": " + entry.getValue());
         }
+        sender.sendMessage(ChatColor.YELLOW + "File I/O:");
+        for (Map.Entry<String, Object> entry : yamlFileManager.getIOExecutor().getStats().entrySet()) {
+            sender.sendMessage(ChatColor.GRAY + "  " + entry.getKey() + ": " + entry.getValue());
+        }
         return true;
     }
     
+    public com.excrele.managers.SnapshotManager getSnapshotManager() {
+        return snapshotManager;
+    }
+    
+    public TemporaryRankManager getTemporaryRankManager() {
+        return temporaryRankManager;
+    }
+    
+    public RankManager getRankManager() {
+        return rankManager;
+    }
+    
     public com.excrele.managers.MetricsManager getMetricsManager() {
         return metricsManager;
     }
@@ -3265,11 +3644,8 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
             return true;
         }
         
-        FileConfiguration ranksConfig = yamlFileManager.getConfig("ranks.yml");
-        
         if (priceStr.equalsIgnoreCase("remove") || priceStr.equals("0")) {
-            ranksConfig.set("ranks." + rankName + ".price", null);
-            yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+            rankManager.setRankSetting(rankName, "price", null);
             sender.sendMessage(ChatColor.GREEN + "Price removed for rank '" + rankName + "'!");
         } else {
             try {
@@ -3278,8 +3654,7 @@ public class ExcrelePerms extends JavaPlugin implements Listener {
                     sender.sendMessage(ChatColor.RED + "Price cannot be negative!");
                     return true;
                 }
-                ranksConfig.set("ranks." + rankName + ".price", price);
-                yamlFileManager.saveConfigSync("ranks.yml", ranksConfig);
+                rankManager.setRankSetting(rankName, "price", price);
                 sender.sendMessage(ChatColor.GREEN + "Price set to " + vaultIntegration.format(price) + 
                     " for rank '" + rankName + "'!");
             } catch (NumberFormatException e) {
@@ -0,0 +1,55 @@
+package com.excrele;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fired once after a batch from the API was committed, instead of the per-player
+ * rank events.
+ */
+public class RankBatchCommitEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+    private final Map<UUID, String> oldRanks;
+    private final Map<UUID, String> newRanks;
+    private final Set<String> editedRanks;
+
+    public RankBatchCommitEvent(Map<UUID, String> oldRanks, Map<UUID, String> newRanks, Set<String> editedRanks) {
+        this.oldRanks = oldRanks;
+        this.newRanks = newRanks;
+        this.editedRanks = editedRanks;
+    }
+
+    /**
+     * Get the rank each reassigned player had before.
+     */
+    public Map<UUID, String> getOldRanks() {
+        return oldRanks;
+    }
+
+    /**
+     * Get the rank each reassigned player has now.
+     */
+    public Map<UUID, String> getNewRanks() {
+        return newRanks;
+    }
+
+    /**
+     * Get the ranks whose permissions or inheritance were edited.
+     */
+    public Set<String> getEditedRanks() {
+        return editedRanks;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
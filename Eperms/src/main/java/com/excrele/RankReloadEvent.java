@@ -3,19 +3,33 @@ package com.excrele;
 import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 import org.bukkit.command.CommandSender;
+import com.excrele.model.RankDiff;
 
 public class RankReloadEvent extends Event {
     private static final HandlerList HANDLERS = new HandlerList();
     private final CommandSender sender;
+    private final RankDiff diff;
 
     public RankReloadEvent(CommandSender sender) {
+        this(sender, null);
+    }
+
+    public RankReloadEvent(CommandSender sender, RankDiff diff) {
         this.sender = sender;
+        this.diff = diff;
     }
 
     public CommandSender getSender() {
         return sender;
     }
 
+    /**
+     * Get what the reload changed, or null if it is unknown.
+     */
+    public RankDiff getDiff() {
+        return diff;
+    }
+
     @Override
     public HandlerList getHandlers() {
         return HANDLERS;
@@ -1,10 +1,12 @@
 package com.excrele.api;
 
 import com.excrele.ExcrelePerms;
+import com.excrele.managers.TemporaryRankManager.TemporaryGrant;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -99,6 +101,17 @@ public class ExcrelePermsAPI {
         return plugin.setPlayerRank(uuid, rank);
     }
 
+    /**
+     * Start a batch of rank assignments and rank permission and inheritance edits
+     * that are validated and applied together. Prefer this to many setPlayerRank calls.
+     *
+     * @return A new batch, or null if the API is not initialized
+     */
+    public static RankBatch batch() {
+        if (!isInitialized()) return null;
+        return new RankBatch(plugin);
+    }
+
     /**
      * Check if a rank exists.
      *
@@ -164,6 +177,87 @@ public class ExcrelePermsAPI {
         return plugin.getAllRanks();
     }
 
+    /**
+     * Get the number of players assigned to a rank.
+     *
+     * @param rank The rank name
+     * @return Number of players with this rank, or 0 if none
+     */
+    public static int getRankMemberCount(String rank) {
+        if (!isInitialized()) return 0;
+        return plugin.getRankMemberCount(rank);
+    }
+
+    /**
+     * Get all players assigned to a rank.
+     *
+     * @param rank The rank name
+     * @return Read-only set of player UUIDs, or empty set if none
+     */
+    public static Set<UUID> getRankMembers(String rank) {
+        if (!isInitialized()) return java.util.Collections.emptySet();
+        return plugin.getRankMembers(rank);
+    }
+
+    /**
+     * Get one page of players assigned to a rank, in a stable order.
+     *
+     * @param rank     The rank name
+     * @param page     Zero-based page number
+     * @param pageSize Players per page
+     * @return Player UUIDs on that page, or empty list past the end
+     */
+    public static List<UUID> getRankMembers(String rank, int page, int pageSize) {
+        if (!isInitialized()) return java.util.Collections.emptyList();
+        return plugin.getRankMembers(rank, page, pageSize);
+    }
+
+    /**
+     * Grant a player a permission node for a while, on top of their rank. Grants stack
+     * and each expires on its own. Must be called from the main thread.
+     *
+     * @param uuid           The player's UUID
+     * @param permission     The permission node
+     * @param value          true to grant the node, false to deny it
+     * @param durationMillis How long the grant lasts
+     * @param world          The world the grant is limited to, or null for every world
+     * @return true if successful, false otherwise
+     */
+    public static boolean addTemporaryPermission(UUID uuid, String permission, boolean value, long durationMillis, String world) {
+        if (!isInitialized() || durationMillis <= 0) return false;
+        plugin.getTemporaryRankManager().addTemporaryGrant(uuid, new TemporaryGrant(TemporaryGrant.Kind.PERMISSION,
+            permission, value, world, System.currentTimeMillis() + durationMillis));
+        return true;
+    }
+
+    /**
+     * Grant a player an extra rank for a while, on top of their rank. Grants stack
+     * and each expires on its own. Must be called from the main thread.
+     *
+     * @param uuid           The player's UUID
+     * @param rank           The rank name
+     * @param durationMillis How long the grant lasts
+     * @param world          The world the grant is limited to, or null for every world
+     * @return true if successful, false otherwise
+     */
+    public static boolean addTemporaryRank(UUID uuid, String rank, long durationMillis, String world) {
+        if (!isInitialized() || durationMillis <= 0 || !plugin.rankExists(rank)) return false;
+        plugin.getTemporaryRankManager().addTemporaryGrant(uuid, new TemporaryGrant(TemporaryGrant.Kind.RANK,
+            rank, true, world, System.currentTimeMillis() + durationMillis));
+        return true;
+    }
+
+    /**
+     * Get a player's timed grants, oldest first.
+     *
+     * @param uuid The player's UUID
+     * @return The player's grants (read-only)
+     */
+    public static List<TemporaryGrant> getTemporaryGrants(UUID uuid) {
+        if (!isInitialized()) return java.util.Collections.emptyList();
+        return plugin.getTemporaryRankManager().getTemporaryGrants(uuid);
+    }
+
     /**
      * Reload the ranks configuration.
      *
@@ -0,0 +1,241 @@
+package com.excrele.api;
+
+import com.excrele.ExcrelePerms;
+import com.excrele.RankBatchCommitEvent;
+import com.excrele.managers.RankManager;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Collects rank assignments and rank permission and inheritance edits, and applies them
+ * together on {@link #commit()}. Get one from {@link ExcrelePermsAPI#batch()}.
+ *
+ * A commit checks every change first and applies none of them if any is invalid.
+ * Otherwise the rank edits are stored first, then player ranks in one write. If either
+ * can't be stored, the rank edits are rolled back and nothing is applied. The rank graph
+ * is rebuilt once, each affected online player is refreshed once, and a single
+ * RankBatchCommitEvent is fired instead of the per-player rank events.
+ */
+public class RankBatch {
+    private final ExcrelePerms plugin;
+    private final Map<UUID, String> assignments = new LinkedHashMap<>();
+    private final List<RankEdit> edits = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private boolean committed;
+
+    RankBatch(ExcrelePerms plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Set a player's rank. A later call for the same player replaces this one.
+     *
+     * @throws IllegalArgumentException if the rank is null or blank
+     */
+    public RankBatch setRank(UUID uuid, String rank) {
+        if (rank == null || rank.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rank cannot be null or blank");
+        }
+        assignments.put(uuid, rank.trim());
+        return this;
+    }
+
+    /**
+     * Add a permission to a rank.
+     */
+    public RankBatch addPermission(String rank, String permission) {
+        edits.add(new RankEdit(rank, permission, false, true));
+        return this;
+    }
+
+    /**
+     * Remove a permission from a rank.
+     */
+    public RankBatch removePermission(String rank, String permission) {
+        edits.add(new RankEdit(rank, permission, false, false));
+        return this;
+    }
+
+    /**
+     * Make a rank inherit from another rank.
+     */
+    public RankBatch addInheritance(String rank, String parentRank) {
+        edits.add(new RankEdit(rank, parentRank, true, true));
+        return this;
+    }
+
+    /**
+     * Stop a rank inheriting from another rank.
+     */
+    public RankBatch removeInheritance(String rank, String parentRank) {
+        edits.add(new RankEdit(rank, parentRank, true, false));
+        return this;
+    }
+
+    /**
+     * Get the number of queued changes.
+     */
+    public int size() {
+        return assignments.size() + edits.size();
+    }
+
+    /**
+     * Get the reasons the last commit was refused.
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Validate and apply every queued change. Must be called on the main thread, and
+     * only once per batch.
+     *
+     * @return true if everything was applied, false if nothing was (see {@link #getErrors()})
+     */
+    public boolean commit() {
+        errors.clear();
+        if (committed) {
+            errors.add("Batch was already committed");
+        } else if (!ExcrelePermsAPI.isInitialized()) {
+            errors.add("ExcrelePerms is not enabled");
+        } else if (!plugin.getServer().isPrimaryThread()) {
+            errors.add("Batches must be committed on the main thread");
+        }
+        if (!errors.isEmpty()) {
+            return reject();
+        }
+
+        // Work out the resulting lists of every edited rank before touching anything
+        ConfigurationSection ranksConfig = plugin.getYAMLFileManager().getConfig("ranks.yml");
+        Map<String, List<String>> permissions = new LinkedHashMap<>();
+        Map<String, List<String>> inheritance = new LinkedHashMap<>();
+        Map<String, List<String>> originalPermissions = new LinkedHashMap<>();
+        Map<String, List<String>> originalInheritance = new LinkedHashMap<>();
+        for (RankEdit edit : edits) {
+            if (!plugin.rankExists(edit.rank)) {
+                errors.add("Unknown rank: " + edit.rank);
+                continue;
+            }
+            if (edit.value == null || edit.value.trim().isEmpty()) {
+                errors.add("Empty " + (edit.inheritance ? "parent rank" : "permission") + " for rank " + edit.rank);
+                continue;
+            }
+            String rank = edit.rank.trim();
+            String value = edit.value.trim();
+            if (edit.inheritance && edit.add && (!plugin.rankExists(value) || value.equals(rank))) {
+                errors.add("Rank " + rank + " cannot inherit from " + value);
+                continue;
+            }
+            String key = edit.inheritance ? ".inheritance" : ".permissions";
+            Map<String, List<String>> originals = edit.inheritance ? originalInheritance : originalPermissions;
+            List<String> list = (edit.inheritance ? inheritance : permissions).computeIfAbsent(rank, name -> {
+                List<String> original = ranksConfig.getStringList("ranks." + name + key);
+                originals.put(name, original);
+                return new ArrayList<>(original);
+            });
+            if (!edit.add) {
+                list.remove(value);
+            } else if (!list.contains(value)) {
+                list.add(value);
+            }
+        }
+        for (String rank : inheritance.keySet()) {
+            if (inheritsFrom(rank, rank, inheritance, ranksConfig, new HashSet<>())) {
+                errors.add("Inheritance of rank " + rank + " would form a cycle");
+            }
+        }
+
+        for (Map.Entry<UUID, String> entry : assignments.entrySet()) {
+            if (entry.getKey() == null) {
+                errors.add("Rank " + entry.getValue() + " assigned to a null UUID");
+            } else if (!plugin.rankExists(entry.getValue())) {
+                errors.add("Unknown rank for " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+        if (!errors.isEmpty()) {
+            return reject();
+        }
+
+        // Current ranks of every assigned player in one lookup
+        Map<UUID, String> currentRanks = plugin.getSnapshotManager().getPlayerRanks(assignments.keySet());
+        Map<UUID, String> oldRanks = new LinkedHashMap<>();
+        Map<UUID, String> newRanks = new LinkedHashMap<>();
+        for (Map.Entry<UUID, String> entry : assignments.entrySet()) {
+            String oldRank = currentRanks.get(entry.getKey());
+            if (!entry.getValue().equals(oldRank)) {
+                oldRanks.put(entry.getKey(), oldRank);
+                newRanks.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // Rank edits go first since they can fail and be rolled back. This queues a refresh
+        // of online members of edited ranks; queued players are refreshed only once
+        RankManager rankManager = plugin.getRankManager();
+        if (!rankManager.applyRankEdits(permissions, inheritance)) {
+            errors.add("The rank edits could not be stored");
+            return reject();
+        }
+        if (!newRanks.isEmpty() && !plugin.getSnapshotManager().setPlayerRanks(newRanks)) {
+            rankManager.applyRankEdits(originalPermissions, originalInheritance);
+            errors.add("The player ranks could not be stored");
+            return reject();
+        }
+        committed = true;
+        List<UUID> online = new ArrayList<>();
+        for (UUID uuid : newRanks.keySet()) {
+            if (plugin.getServer().getPlayer(uuid) != null) {
+                online.add(uuid);
+            }
+        }
+        rankManager.getChangePropagator().refresh(online);
+
+        Set<String> editedRanks = new LinkedHashSet<>(permissions.keySet());
+        editedRanks.addAll(inheritance.keySet());
+        plugin.getServer().getPluginManager().callEvent(new RankBatchCommitEvent(oldRanks, newRanks, editedRanks));
+        return true;
+    }
+
+    private boolean reject() {
+        plugin.getLogger().warning("Rank batch rejected (" + errors.size() + " problem(s)), first: " + errors.get(0));
+        return false;
+    }
+
+    /**
+     * Check if a rank reaches an ancestor through the inheritance the batch would leave behind.
+     */
+    private static boolean inheritsFrom(String rank, String ancestor, Map<String, List<String>> inheritance,
+                                        ConfigurationSection ranksConfig, Set<String> visited) {
+        List<String> parents = inheritance.containsKey(rank) ? inheritance.get(rank)
+            : ranksConfig.getStringList("ranks." + rank + ".inheritance");
+        for (String parent : parents) {
+            if (parent.equals(ancestor)
+                    || (visited.add(parent) && inheritsFrom(parent, ancestor, inheritance, ranksConfig, visited))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class RankEdit {
+        private final String rank;
+        private final String value;
+        private final boolean inheritance;
+        private final boolean add;
+
+        private RankEdit(String rank, String value, boolean inheritance, boolean add) {
+            this.rank = rank;
+            this.value = value;
+            this.inheritance = inheritance;
+            this.add = add;
+        }
+    }
+}
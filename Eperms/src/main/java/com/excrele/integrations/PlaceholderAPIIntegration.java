@@ -2,6 +2,7 @@ package com.excrele.integrations;
 
 import com.excrele.ExcrelePerms;
 import com.excrele.managers.TrackManager;
+import com.excrele.model.RankSnapshot;
 import org.bukkit.OfflinePlayer;
 
 /**
@@ -46,7 +47,8 @@ public class PlaceholderAPIIntegration {
                 return prefix + name + suffix;
                 
             case "rank_priority":
-                return String.valueOf(plugin.getRanksConfig().getInt("ranks." + rank + ".priority", 0));
+                RankSnapshot rankInfo = plugin.getSnapshotManager().getSnapshot().getRank(rank);
+                return String.valueOf(rankInfo != null ? rankInfo.getPriority() : 0);
                 
             case "next_rank":
                 String trackName = trackManager.getRankTrack(rank);
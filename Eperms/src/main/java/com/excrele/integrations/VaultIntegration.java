@@ -137,7 +137,7 @@ public class VaultIntegration {
      */
     private double getInternalBalance(OfflinePlayer player) {
         // Check if player has balance stored in config
-        return plugin.getRanksConfig().getDouble("economy.players." + player.getUniqueId() + ".balance", 0.0);
+        return plugin.getStorageBackend().getBalance(player.getUniqueId());
     }
     
     /**
@@ -146,8 +146,7 @@ public class VaultIntegration {
     private boolean withdrawInternal(OfflinePlayer player, double amount) {
         double currentBalance = getInternalBalance(player);
         if (currentBalance >= amount) {
-            plugin.getRanksConfig().set("economy.players." + player.getUniqueId() + ".balance", currentBalance - amount);
-            plugin.getYAMLFileManager().saveConfigSync("ranks.yml", plugin.getRanksConfig());
+            plugin.getStorageBackend().setBalance(player.getUniqueId(), currentBalance - amount);
             return true;
         }
         return false;
@@ -172,8 +171,7 @@ public class VaultIntegration {
         }
         // Standalone mode
         double currentBalance = getInternalBalance(player);
-        plugin.getRanksConfig().set("economy.players." + player.getUniqueId() + ".balance", currentBalance + amount);
-        plugin.getYAMLFileManager().saveConfigSync("ranks.yml", plugin.getRanksConfig());
+        plugin.getStorageBackend().setBalance(player.getUniqueId(), currentBalance + amount);
         return true;
     }
     
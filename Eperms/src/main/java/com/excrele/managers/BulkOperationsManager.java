@@ -1,8 +1,8 @@
 package com.excrele.managers;
 
+import com.excrele.BulkRankChangeEvent;
 import com.excrele.ExcrelePerms;
 import com.excrele.yaml.YAMLFileManager;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
@@ -11,14 +11,27 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.*;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages bulk operations for ranks.
+ *
+ * Player names are resolved from the plugin's name index and current ranks are read in
+ * one pass off the main thread. The changes are then applied in chunks through the
+ * WorkScheduler, with progress shown to the sender; each player's rank is checked again
+ * when their chunk runs, so a change made in the meantime is not overwritten. Everything
+ * is stored in one write at the end and announced with a single BulkRankChangeEvent.
+ * If the plugin shuts down first, whatever was applied so far is stored by {@link #shutdown()}.
  */
 @SuppressWarnings("deprecation")
 public class BulkOperationsManager {
+    // Players applied per scheduler job
+    private static final int CHUNK_SIZE = 100;
+    
     private final ExcrelePerms plugin;
     private final YAMLFileManager fileManager;
+    // New ranks of running operations that are applied but not stored yet
+    private final Set<Map<UUID, String>> unstored = Collections.newSetFromMap(new IdentityHashMap<>());
     
     public BulkOperationsManager(ExcrelePerms plugin, YAMLFileManager fileManager) {
         this.plugin = plugin;
@@ -26,129 +39,158 @@ public class BulkOperationsManager {
     }
     
     /**
-     * Add rank to multiple players.
+     * Add rank to multiple players. Call on the main thread; the result is completed
+     * on the main thread too.
      */
-    public BulkResult bulkAddRank(CommandSender sender, String rank, List<String> playerNames) {
-        BulkResult result = new BulkResult();
+    public CompletableFuture<BulkResult> bulkAddRank(CommandSender sender, String rank, List<String> playerNames) {
         FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
         
         if (!ranksConfig.contains("ranks." + rank)) {
+            BulkResult result = new BulkResult();
             result.addError("Rank '" + rank + "' does not exist!");
-            return result;
+            return CompletableFuture.completedFuture(result);
         }
         
-        for (String playerName : playerNames) {
-            try {
-                UUID playerUUID = getPlayerUUID(playerName);
-                if (playerUUID == null) {
-                    result.addSkipped(playerName + " (not found)");
-                    continue;
-                }
-                
-                ranksConfig.set("players." + playerUUID + ".rank", rank);
-                
-                // Update online player
-                Player onlinePlayer = plugin.getServer().getPlayer(playerUUID);
-                if (onlinePlayer != null) {
-                    plugin.loadPlayerPermissions(onlinePlayer);
-                }
-                
-                result.addSuccess(playerName);
-            } catch (Exception e) {
-                result.addError(playerName + ": " + e.getMessage());
+        return run(sender, "Bulk add", playerNames, (playerName, currentRank, result) -> rank);
+    }
+    
+    /**
+     * Promote multiple players. Call on the main thread; the result is completed on the
+     * main thread too.
+     */
+    public CompletableFuture<BulkResult> bulkPromote(CommandSender sender, List<String> playerNames, TrackManager trackManager) {
+        return run(sender, "Bulk promote", playerNames, (playerName, currentRank, result) -> {
+            String nextRank = trackManager.getNextRank(currentRank, getTrack(trackManager, currentRank));
+            if (nextRank == null) {
+                result.addSkipped(playerName + " (cannot promote further)");
             }
-        }
-        
-        fileManager.saveConfigSync("ranks.yml", ranksConfig);
-        return result;
+            return nextRank;
+        });
     }
     
     /**
-     * Promote multiple players.
+     * Demote multiple players. Call on the main thread; the result is completed on the
+     * main thread too.
      */
-    public BulkResult bulkPromote(CommandSender sender, List<String> playerNames, TrackManager trackManager) {
+    public CompletableFuture<BulkResult> bulkDemote(CommandSender sender, List<String> playerNames, TrackManager trackManager) {
+        return run(sender, "Bulk demote", playerNames, (playerName, currentRank, result) -> {
+            String previousRank = trackManager.getPreviousRank(currentRank, getTrack(trackManager, currentRank));
+            if (previousRank == null) {
+                result.addSkipped(playerName + " (cannot demote further)");
+            }
+            return previousRank;
+        });
+    }
+    
+    private String getTrack(TrackManager trackManager, String rank) {
+        String trackName = trackManager.getRankTrack(rank);
+        return trackName == null || trackName.isEmpty() ? "defaultTrack" : trackName;
+    }
+    
+    private CompletableFuture<BulkResult> run(CommandSender sender, String operation, List<String> playerNames,
+                                              RankChange change) {
+        CompletableFuture<BulkResult> future = new CompletableFuture<>();
         BulkResult result = new BulkResult();
-        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-        
+        Map<UUID, String> players = new LinkedHashMap<>();
         for (String playerName : playerNames) {
+            UUID playerUUID = getPlayerUUID(playerName);
+            if (playerUUID == null) {
+                result.addSkipped(playerName + (plugin.getPlayerNameIndex().isIndexing()
+                    ? " (not found, names are still being indexed)" : " (not found)"));
+            } else {
+                players.putIfAbsent(playerUUID, playerName);
+            }
+        }
+        SnapshotManager snapshotManager = plugin.getSnapshotManager();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            Map<UUID, String> currentRanks;
             try {
-                UUID playerUUID = getPlayerUUID(playerName);
-                if (playerUUID == null) {
-                    result.addSkipped(playerName + " (not found)");
-                    continue;
-                }
-                
-                String currentRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
-                String trackName = trackManager.getRankTrack(currentRank);
-                if (trackName == null || trackName.isEmpty()) {
-                    trackName = "defaultTrack";
-                }
-                
-                String nextRank = trackManager.getNextRank(currentRank, trackName);
-                if (nextRank == null) {
-                    result.addSkipped(playerName + " (cannot promote further)");
-                    continue;
-                }
-                
-                ranksConfig.set("players." + playerUUID + ".rank", nextRank);
-                
-                Player onlinePlayer = plugin.getServer().getPlayer(playerUUID);
-                if (onlinePlayer != null) {
-                    plugin.loadPlayerPermissions(onlinePlayer);
-                }
-                
-                result.addSuccess(playerName + " (" + currentRank + " → " + nextRank + ")");
+                currentRanks = snapshotManager.getPlayerRanks(players.keySet());
             } catch (Exception e) {
-                result.addError(playerName + ": " + e.getMessage());
+                future.completeExceptionally(e);
+                return;
             }
-        }
-        
-        fileManager.saveConfigSync("ranks.yml", ranksConfig);
-        return result;
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin,
+                    () -> apply(sender, operation, players, currentRanks, change, result, future));
+            } else {
+                future.completeExceptionally(new IllegalStateException("plugin disabled"));
+            }
+        });
+        return future;
     }
     
     /**
-     * Demote multiple players.
+     * Apply every player's new rank in chunks under the scheduler's time budget, then store them all.
+     *
+     * @param currentRanks each player's rank when the operation started
      */
-    public BulkResult bulkDemote(CommandSender sender, List<String> playerNames, TrackManager trackManager) {
-        BulkResult result = new BulkResult();
-        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-        
-        for (String playerName : playerNames) {
-            try {
-                UUID playerUUID = getPlayerUUID(playerName);
-                if (playerUUID == null) {
-                    result.addSkipped(playerName + " (not found)");
-                    continue;
-                }
-                
-                String currentRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
-                String trackName = trackManager.getRankTrack(currentRank);
-                if (trackName == null || trackName.isEmpty()) {
-                    trackName = "defaultTrack";
-                }
-                
-                String previousRank = trackManager.getPreviousRank(currentRank, trackName);
-                if (previousRank == null) {
-                    result.addSkipped(playerName + " (cannot demote further)");
-                    continue;
+    private void apply(CommandSender sender, String operation, Map<UUID, String> players, Map<UUID, String> currentRanks,
+                       RankChange change, BulkResult result, CompletableFuture<BulkResult> future) {
+        SnapshotManager snapshotManager = plugin.getSnapshotManager();
+        Map<UUID, String> oldRanks = new LinkedHashMap<>();
+        Map<UUID, String> newRanks = new LinkedHashMap<>();
+        Map<Object, Runnable> jobs = new LinkedHashMap<>();
+        unstored.add(newRanks);
+        List<UUID> order = new ArrayList<>(players.keySet());
+        for (int start = 0; start < order.size(); start += CHUNK_SIZE) {
+            List<UUID> chunk = order.subList(start, Math.min(order.size(), start + CHUNK_SIZE));
+            // A key of its own, so these jobs never replace another queued job
+            jobs.put(new Object(), () -> {
+                Map<UUID, String> changes = new LinkedHashMap<>();
+                for (UUID playerUUID : chunk) {
+                    String playerName = players.get(playerUUID);
+                    String currentRank = currentRanks.get(playerUUID);
+                    if (!currentRank.equals(snapshotManager.getPlayerRank(playerUUID))) {
+                        result.addSkipped(playerName + " (rank changed during the operation)");
+                        continue;
+                    }
+                    try {
+                        String newRank = change.apply(playerName, currentRank, result);
+                        if (newRank != null) {
+                            changes.put(playerUUID, newRank);
+                            oldRanks.put(playerUUID, currentRank);
+                            result.addSuccess(playerName + " (" + currentRank + " → " + newRank + ")");
+                        }
+                    } catch (Exception e) {
+                        result.addError(playerName + ": " + e.getMessage());
+                    }
                 }
-                
-                ranksConfig.set("players." + playerUUID + ".rank", previousRank);
-                
-                Player onlinePlayer = plugin.getServer().getPlayer(playerUUID);
-                if (onlinePlayer != null) {
-                    plugin.loadPlayerPermissions(onlinePlayer);
+                // Published now so later changes see it, stored with the rest at the end
+                snapshotManager.applyPlayerChanges(changes);
+                newRanks.putAll(changes);
+            });
+        }
+        
+        plugin.getWorkScheduler().submitAll(jobs, sender, operation, () -> {
+            unstored.remove(newRanks);
+            if (!newRanks.isEmpty()) {
+                Map<UUID, String> stored = snapshotManager.persistPlayerRanks(newRanks);
+                oldRanks.keySet().retainAll(stored.keySet());
+                // Online players are refreshed on the main thread over the next ticks
+                plugin.getRankManager().getChangePropagator().refresh(stored.keySet(), sender);
+                if (!stored.isEmpty()) {
+                    plugin.getServer().getPluginManager().callEvent(new BulkRankChangeEvent(sender, operation, oldRanks, stored));
                 }
-                
-                result.addSuccess(playerName + " (" + currentRank + " → " + previousRank + ")");
-            } catch (Exception e) {
-                result.addError(playerName + ": " + e.getMessage());
+            }
+            future.complete(result);
+        });
+    }
+    
+    /**
+     * Store the changes that running operations have applied so far. Call on shutdown,
+     * before the scheduler drops their remaining jobs and the storage backend is closed.
+     */
+    public void shutdown() {
+        SnapshotManager snapshotManager = plugin.getSnapshotManager();
+        for (Map<UUID, String> newRanks : unstored) {
+            if (!newRanks.isEmpty()) {
+                Map<UUID, String> stored = snapshotManager.persistPlayerRanks(newRanks);
+                plugin.getLogger().warning("Bulk operation interrupted by shutdown; stored the "
+                    + stored.size() + " changes applied so far");
             }
         }
-        
-        fileManager.saveConfigSync("ranks.yml", ranksConfig);
-        return result;
+        unstored.clear();
     }
     
     /**
@@ -177,18 +219,23 @@ public class BulkOperationsManager {
         try {
             return UUID.fromString(playerName);
         } catch (IllegalArgumentException e) {
-            // Not a UUID, try as player name
-            Player onlinePlayer = plugin.getServer().getPlayer(playerName);
-            if (onlinePlayer != null) {
-                return onlinePlayer.getUniqueId();
-            }
-            
-            OfflinePlayer offlinePlayer = plugin.getServer().getOfflinePlayer(playerName);
-            if (offlinePlayer.hasPlayedBefore()) {
-                return offlinePlayer.getUniqueId();
+            // Not a UUID, try as player name; online players are known even before indexing finishes
+            UUID indexed = plugin.getPlayerNameIndex().getUUID(playerName);
+            if (indexed == null) {
+                Player online = plugin.getServer().getPlayerExact(playerName);
+                return online != null ? online.getUniqueId() : null;
             }
+            return indexed;
         }
-        return null;
+    }
+    
+    private interface RankChange {
+        /**
+         * Work out a player's new rank.
+         *
+         * @return the new rank, or null after recording why the player is skipped
+         */
+        String apply(String playerName, String currentRank, BulkResult result);
     }
     
     /**
@@ -0,0 +1,86 @@
+package com.excrele.managers;
+
+import com.excrele.model.RankSnapshot;
+import org.bukkit.ChatColor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the color-translated prefix, suffix and chat format of each rank so chat,
+ * join and quit don't look up and translate them on every event.
+ * Entries are dropped when a rank's display settings change or ranks are reloaded.
+ */
+public class FormatCache {
+    private final SnapshotManager snapshotManager;
+    private final Map<String, RankFormat> formats = new ConcurrentHashMap<>();
+    private volatile long generation;
+    
+    public FormatCache(SnapshotManager snapshotManager) {
+        this.snapshotManager = snapshotManager;
+    }
+    
+    /**
+     * Get the compiled format of a rank. Safe to call from any thread.
+     */
+    public RankFormat get(String rank) {
+        RankFormat format = formats.get(rank);
+        if (format != null) {
+            return format;
+        }
+        // Don't cache a format compiled from a snapshot that was invalidated meanwhile
+        long observed = generation;
+        format = new RankFormat(snapshotManager.getSnapshot().getRank(rank));
+        formats.putIfAbsent(rank, format);
+        if (generation != observed) {
+            formats.remove(rank, format);
+        }
+        return format;
+    }
+    
+    /**
+     * Drop the cached format of a rank.
+     */
+    public synchronized void invalidate(String rank) {
+        generation++;
+        formats.remove(rank);
+    }
+    
+    /**
+     * Drop all cached formats.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        formats.clear();
+    }
+    
+    /**
+     * Translated display strings of one rank.
+     */
+    public static class RankFormat {
+        private final String prefix;
+        private final String suffix;
+        private final String chatFormat;
+        
+        private RankFormat(RankSnapshot rank) {
+            this.prefix = rank != null ? ChatColor.translateAlternateColorCodes('&', rank.getPrefix()) : "";
+            this.suffix = rank != null ? ChatColor.translateAlternateColorCodes('&', rank.getSuffix()) : "";
+            this.chatFormat = prefix + "%1$s" + suffix + ": %2$s";
+        }
+        
+        public String getPrefix() {
+            return prefix;
+        }
+        
+        public String getSuffix() {
+            return suffix;
+        }
+        
+        /**
+         * Get the template for AsyncPlayerChatEvent#setFormat.
+         */
+        public String getChatFormat() {
+            return chatFormat;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.excrele.managers;
+
+import com.excrele.permissions.RankGraph;
+import com.excrele.permissions.RankPermissionRegistry;
+import com.excrele.yaml.IOExecutor;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Works out a joining player's data on the async pre-login thread: their rank (read from
+ * storage if it isn't cached), the compiled permissions of that rank and the permissions
+ * of their timed grants. Login and join then only attach the result.
+ *
+ * The work waits at most prefetch-timeout-ms. If it times out, or the player's rank,
+ * grants or the rank graph changed before they joined, the main thread works it out as
+ * before. Results are dropped on quit, on a refused login, or after a minute for
+ * connections that never got that far.
+ */
+public class LoginPrefetcher {
+    private static final long STALE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    
+    private final JavaPlugin plugin;
+    private final IOExecutor ioExecutor;
+    private final SnapshotManager snapshotManager;
+    private final RankManager rankManager;
+    private final TemporaryRankManager temporaryRankManager;
+    private final long timeoutMillis;
+    private final Map<UUID, PrefetchedPlayer> prefetched = new ConcurrentHashMap<>();
+    
+    public LoginPrefetcher(JavaPlugin plugin, IOExecutor ioExecutor, SnapshotManager snapshotManager,
+                           RankManager rankManager, TemporaryRankManager temporaryRankManager, long timeoutMillis) {
+        this.plugin = plugin;
+        this.ioExecutor = ioExecutor;
+        this.snapshotManager = snapshotManager;
+        this.rankManager = rankManager;
+        this.temporaryRankManager = temporaryRankManager;
+        this.timeoutMillis = Math.max(1L, timeoutMillis);
+    }
+    
+    /**
+     * Prefetch a player's data. Called from the async pre-login thread.
+     */
+    public void prefetch(UUID uuid) {
+        long now = System.currentTimeMillis();
+        prefetched.values().removeIf(player -> now - player.time > STALE_MILLIS);
+        
+        CompletableFuture<PrefetchedPlayer> future = ioExecutor.submit(() -> compute(uuid, now));
+        try {
+            prefetched.put(uuid, future.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            plugin.getLogger().warning("Prefetching player " + uuid + " timed out, loading at join instead");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().warning("Failed to prefetch player " + uuid + ": " + e.getCause().getMessage());
+        }
+    }
+    
+    private PrefetchedPlayer compute(UUID uuid, long time) {
+        long seen = snapshotManager.getChangeCount();
+        String rank = snapshotManager.getPlayerRank(uuid);
+        RankGraph graph = rankManager.getRankGraph();
+        Map<String, Boolean> rankPermissions = graph.hasRank(rank)
+            ? Collections.singletonMap(RankPermissionRegistry.getRankNode(rank), true)
+            : Collections.<String, Boolean>emptyMap();
+        return new PrefetchedPlayer(rank, seen, graph, rankPermissions,
+            temporaryRankManager.prepareGrantedPermissions(uuid), time);
+    }
+    
+    /**
+     * Get a player's prefetched data, or null if there is none.
+     */
+    public PrefetchedPlayer get(UUID uuid) {
+        return prefetched.get(uuid);
+    }
+    
+    /**
+     * Take a player's prefetched data, or null if there is none.
+     */
+    public PrefetchedPlayer remove(UUID uuid) {
+        return prefetched.remove(uuid);
+    }
+    
+    /**
+     * A player's data, worked out before they joined.
+     */
+    public static final class PrefetchedPlayer {
+        private final String rank;
+        private final long changeCount;
+        private final RankGraph graph;
+        private final Map<String, Boolean> rankPermissions;
+        private final TemporaryRankManager.PreparedGrants grants;
+        private final long time;
+        
+        private PrefetchedPlayer(String rank, long changeCount, RankGraph graph, Map<String, Boolean> rankPermissions,
+                                 TemporaryRankManager.PreparedGrants grants, long time) {
+            this.rank = rank;
+            this.changeCount = changeCount;
+            this.graph = graph;
+            this.rankPermissions = rankPermissions;
+            this.grants = grants;
+            this.time = time;
+        }
+        
+        public String getRank() {
+            return rank;
+        }
+        
+        /**
+         * The snapshot change count the rank was read at.
+         */
+        public long getChangeCount() {
+            return changeCount;
+        }
+        
+        /**
+         * Get the rank's permission nodes, or null if they no longer apply because the
+         * player's rank or the rank graph changed since.
+         */
+        public Map<String, Boolean> getRankPermissions(String currentRank, RankGraph currentGraph) {
+            return rank.equals(currentRank) && graph == currentGraph ? rankPermissions : null;
+        }
+        
+        public TemporaryRankManager.PreparedGrants getGrants() {
+            return grants;
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.excrele.managers;
 
 import com.excrele.ExcrelePerms;
-import com.excrele.yaml.YAMLFileManager;
-import org.bukkit.configuration.file.FileConfiguration;
+import com.excrele.storage.StorageBackend;
 import org.bukkit.entity.Player;
 
 import java.util.HashMap;
@@ -15,12 +14,12 @@ import java.util.UUID;
  */
 public class MultiWorldManager {
     private final ExcrelePerms plugin;
-    private final YAMLFileManager fileManager;
+    private final StorageBackend storage;
     private final Map<UUID, Map<String, String>> worldRanks = new HashMap<>(); // player -> world -> rank
     
-    public MultiWorldManager(ExcrelePerms plugin, YAMLFileManager fileManager) {
+    public MultiWorldManager(ExcrelePerms plugin) {
         this.plugin = plugin;
-        this.fileManager = fileManager;
+        this.storage = plugin.getStorageBackend();
         loadWorldRanks();
     }
     
@@ -33,7 +32,7 @@ public class MultiWorldManager {
         }
         
         worldRanks.computeIfAbsent(playerUUID, k -> new HashMap<>()).put(world, rank);
-        saveWorldRanks();
+        storage.setWorldRank(playerUUID, world, rank);
         return true;
     }
     
@@ -70,39 +69,13 @@ public class MultiWorldManager {
             if (playerWorldRanks.isEmpty()) {
                 worldRanks.remove(playerUUID);
             }
-            saveWorldRanks();
+            storage.setWorldRank(playerUUID, world, null);
             return true;
         }
         return false;
     }
     
     private void loadWorldRanks() {
-        FileConfiguration config = fileManager.getConfig("world-ranks.yml");
-        if (config.contains("world-ranks")) {
-            for (String playerUUIDStr : config.getConfigurationSection("world-ranks").getKeys(false)) {
-                try {
-                    UUID playerUUID = UUID.fromString(playerUUIDStr);
-                    Map<String, String> worldRanksForPlayer = new HashMap<>();
-                    for (String world : config.getConfigurationSection("world-ranks." + playerUUIDStr).getKeys(false)) {
-                        worldRanksForPlayer.put(world, config.getString("world-ranks." + playerUUIDStr + "." + world));
-                    }
-                    worldRanks.put(playerUUID, worldRanksForPlayer);
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid UUID in world-ranks.yml: " + playerUUIDStr);
-                }
-            }
-        }
-    }
-    
-    private void saveWorldRanks() {
-        FileConfiguration config = fileManager.getConfig("world-ranks.yml");
-        config.set("world-ranks", null);
-        for (Map.Entry<UUID, Map<String, String>> entry : worldRanks.entrySet()) {
-            for (Map.Entry<String, String> worldEntry : entry.getValue().entrySet()) {
-                config.set("world-ranks." + entry.getKey() + "." + worldEntry.getKey(), worldEntry.getValue());
-            }
-        }
-        fileManager.saveConfigSync("world-ranks.yml", config);
+        worldRanks.putAll(storage.loadWorldRanks());
     }
 }
-
@@ -0,0 +1,223 @@
+package com.excrele.managers;
+
+import com.excrele.yaml.IOExecutor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Logger;
+
+/**
+ * The plugin's own case-insensitive index of player names to UUIDs, so commands never
+ * have to ask the server for an offline player by name (which can block on a profile
+ * lookup). Lookups and prefix searches are answered from memory and are safe from any
+ * thread.
+ *
+ * The index is kept in a small append-only file, one {@code <uuid> <name>} line per
+ * change; later lines win. It is rewritten with one line per player once superseded
+ * lines pile up.
+ */
+public class PlayerNameIndex {
+    private static final String KEY = "names";
+    
+    private final File file;
+    private final IOExecutor ioExecutor;
+    private final Logger logger;
+    private final ConcurrentSkipListMap<String, UUID> byName = new ConcurrentSkipListMap<>(); // lower-case name -> uuid
+    private final Map<UUID, String> byUUID = new ConcurrentHashMap<>();
+    private volatile boolean indexing;
+    
+    public PlayerNameIndex(File file, IOExecutor ioExecutor, Logger logger) {
+        this.file = file;
+        this.ioExecutor = ioExecutor;
+        this.logger = logger;
+    }
+    
+    /**
+     * Read the index from disk.
+     *
+     * @return false if there is no index yet
+     */
+    public boolean load() {
+        if (!file.exists()) {
+            return false;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    continue;
+                }
+                try {
+                    put(UUID.fromString(line.substring(0, space)), line.substring(space + 1));
+                    lines++;
+                } catch (IllegalArgumentException e) {
+                    // Torn last line after a crash, skip
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read player name index: " + e.getMessage());
+        }
+        if (lines > byUUID.size() * 2 + 1024) {
+            rewrite();
+        }
+        return true;
+    }
+    
+    /**
+     * Add every player the server knows about that isn't indexed yet, then write the
+     * whole index. Reads the server's player data, so call it off the main thread.
+     */
+    public void seed(OfflinePlayer[] players) {
+        for (OfflinePlayer player : players) {
+            if (player.getName() != null && !byUUID.containsKey(player.getUniqueId())) {
+                put(player.getUniqueId(), player.getName());
+            }
+        }
+        rewrite();
+        logger.info("Indexed " + byUUID.size() + " player names");
+    }
+    
+    /**
+     * Run {@link #seed} with the server's players on the I/O pool, after any pending
+     * index writes. Until it finishes, {@link #isIndexing()} is true.
+     */
+    public void seedAsync(Server server) {
+        indexing = true;
+        ioExecutor.submit(KEY, () -> {
+            seed(server.getOfflinePlayers());
+            return null;
+        }).whenComplete((result, error) -> {
+            indexing = false;
+            if (error != null) {
+                logger.warning("Failed to index player names: " + error.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Check if the first-start indexing is still running, so a name that isn't found may
+     * just not be indexed yet.
+     */
+    public boolean isIndexing() {
+        return indexing;
+    }
+    
+    /**
+     * Record a player's current name, e.g. when they join. Does nothing if it is known.
+     */
+    public void update(UUID uuid, String name) {
+        if (name.equals(byUUID.get(uuid)) && uuid.equals(byName.get(toKey(name)))) {
+            return;
+        }
+        put(uuid, name);
+        byte[] line = (uuid + " " + name + "\n").getBytes(StandardCharsets.UTF_8);
+        ioExecutor.submit(KEY, () -> append(line));
+    }
+    
+    /**
+     * Get the UUID of the player last seen with a name, ignoring case.
+     *
+     * @return the UUID, or null if no player with that name is known
+     */
+    public UUID getUUID(String name) {
+        return byName.get(toKey(name));
+    }
+    
+    /**
+     * Get the name a player was last seen with, or null if unknown.
+     */
+    public String getName(UUID uuid) {
+        return byUUID.get(uuid);
+    }
+    
+    /**
+     * Get known names starting with a prefix, ignoring case, in alphabetical order.
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        String from = toKey(prefix);
+        for (Map.Entry<String, UUID> entry : byName.tailMap(from).entrySet()) {
+            if (names.size() >= limit || !entry.getKey().startsWith(from)) {
+                break;
+            }
+            String name = byUUID.get(entry.getValue());
+            names.add(name != null ? name : entry.getKey());
+        }
+        return names;
+    }
+    
+    /**
+     * Get the number of indexed players.
+     */
+    public int size() {
+        return byUUID.size();
+    }
+    
+    private synchronized void put(UUID uuid, String name) {
+        String previous = byUUID.put(uuid, name);
+        if (previous != null) {
+            // Only if no other player has taken the old name since
+            byName.remove(toKey(previous), uuid);
+        }
+        // Names can be reused; the name now belongs to this player
+        byName.put(toKey(name), uuid);
+    }
+    
+    private boolean append(byte[] line) {
+        try {
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to update player name index: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Write one line per player to a temp file and move it over the index. Every player is
+     * kept, including those whose last name now belongs to someone else.
+     */
+    private void rewrite() {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                // Players whose name was taken by someone else go first, so that on load
+                // (where later lines win) each name ends up with its current owner
+                for (boolean owners : new boolean[] {false, true}) {
+                    for (Map.Entry<UUID, String> entry : byUUID.entrySet()) {
+                        if (entry.getKey().equals(byName.get(toKey(entry.getValue()))) == owners) {
+                            writer.write(entry.getKey() + " " + entry.getValue());
+                            writer.newLine();
+                        }
+                    }
+                }
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("Failed to write player name index: " + e.getMessage());
+        }
+    }
+    
+    private static String toKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
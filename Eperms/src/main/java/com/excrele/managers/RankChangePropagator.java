@@ -0,0 +1,93 @@
+package com.excrele.managers;
+
+import com.excrele.permissions.RankGraph;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Pushes rank definition changes to the online players they affect.
+ * The affected set is the changed ranks plus every rank inheriting from them; only
+ * online members of those ranks are refreshed, spread over ticks by the WorkScheduler,
+ * instead of everyone.
+ */
+public class RankChangePropagator {
+    private final JavaPlugin plugin;
+    private final SnapshotManager snapshotManager;
+    private final WorkScheduler scheduler;
+    private final Consumer<Player> refresher;
+    
+    public RankChangePropagator(JavaPlugin plugin, SnapshotManager snapshotManager, WorkScheduler scheduler,
+                                Consumer<Player> refresher) {
+        this.plugin = plugin;
+        this.snapshotManager = snapshotManager;
+        this.scheduler = scheduler;
+        this.refresher = refresher;
+    }
+    
+    /**
+     * Queue a refresh for online players in the given ranks or any of their descendants.
+     *
+     * @return the number of players queued
+     */
+    public int propagate(Collection<String> ranks, RankGraph graph) {
+        return propagate(ranks, graph, null);
+    }
+    
+    /**
+     * Queue a refresh for online players in the given ranks or any of their descendants,
+     * reporting progress to the sender if there is one.
+     *
+     * @return the number of players queued
+     */
+    public int propagate(Collection<String> ranks, RankGraph graph, CommandSender sender) {
+        if (ranks.isEmpty()) {
+            return 0;
+        }
+        Set<String> affected = new HashSet<>(ranks);
+        for (String rank : ranks) {
+            affected.addAll(graph.getDescendants(rank));
+        }
+        
+        Set<UUID> players = new HashSet<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            String rank = snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId());
+            if (affected.contains(rank)) {
+                players.add(player.getUniqueId());
+            }
+        }
+        refresh(players, sender);
+        return players.size();
+    }
+    
+    /**
+     * Queue a refresh for the given players; offline ones are skipped when their turn comes.
+     */
+    public void refresh(Collection<UUID> players) {
+        refresh(players, null);
+    }
+    
+    /**
+     * Queue a refresh for the given players, reporting progress to the sender if there is one.
+     */
+    public void refresh(Collection<UUID> players, CommandSender sender) {
+        Map<UUID, Runnable> jobs = new LinkedHashMap<>();
+        for (UUID uuid : players) {
+            jobs.put(uuid, () -> {
+                Player player = plugin.getServer().getPlayer(uuid);
+                if (player != null) {
+                    refresher.accept(player);
+                }
+            });
+        }
+        scheduler.submitAll(jobs, sender, "Refreshing players");
+    }
+}
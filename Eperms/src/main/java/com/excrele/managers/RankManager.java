@@ -1,23 +1,99 @@
 package com.excrele.managers;
 
+import com.excrele.permissions.RankGraph;
+import com.excrele.permissions.RankPermissionRegistry;
 import com.excrele.yaml.YAMLFileManager;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Manages rank creation, deletion, and editing.
  */
 public class RankManager {
-    @SuppressWarnings("unused")
     private final JavaPlugin plugin;
     private final YAMLFileManager fileManager;
+    private final SnapshotManager snapshotManager;
+    private final RankPermissionRegistry permissionRegistry;
+    private final FormatCache formatCache;
+    private final RankChangePropagator changePropagator;
+    private volatile RankGraph rankGraph;
     
-    public RankManager(JavaPlugin plugin, YAMLFileManager fileManager) {
+    /**
+     * @param playerRefresher Re-applies a player's rank data; run for online players whose rank changed definition
+     */
+    public RankManager(JavaPlugin plugin, YAMLFileManager fileManager, SnapshotManager snapshotManager,
+                       WorkScheduler scheduler, Consumer<Player> playerRefresher) {
         this.plugin = plugin;
         this.fileManager = fileManager;
+        this.snapshotManager = snapshotManager;
+        this.permissionRegistry = new RankPermissionRegistry(plugin.getServer().getPluginManager());
+        this.formatCache = new FormatCache(snapshotManager);
+        this.changePropagator = new RankChangePropagator(plugin, snapshotManager, scheduler, playerRefresher);
+        this.rankGraph = RankGraph.empty();
+    }
+    
+    /**
+     * Get the compiled rank graph.
+     */
+    public RankGraph getRankGraph() {
+        return rankGraph;
+    }
+    
+    /**
+     * Get the registry of shared per-rank Bukkit permissions.
+     */
+    public RankPermissionRegistry getPermissionRegistry() {
+        return permissionRegistry;
+    }
+    
+    /**
+     * Get the propagator that refreshes online players a few per tick.
+     */
+    public RankChangePropagator getChangePropagator() {
+        return changePropagator;
+    }
+    
+    /**
+     * Get the cache of translated rank prefixes, suffixes and chat formats.
+     */
+    public FormatCache getFormatCache() {
+        return formatCache;
+    }
+    
+    /**
+     * Recompile the rank graph from ranks.yml, update the shared rank permissions
+     * and republish the rank snapshots. Called after every rank mutation and on reload.
+     * Online members of ranks whose effective permissions changed (and of their
+     * descendants) are refreshed over the next ticks by the WorkScheduler.
+     */
+    public void rebuildRankGraph() {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        RankGraph graph = RankGraph.build(ranksConfig.getConfigurationSection("ranks"), plugin.getLogger());
+        rankGraph = graph;
+        Set<String> changed = permissionRegistry.sync(graph);
+        snapshotManager.refreshRanks();
+        changePropagator.propagate(changed, graph);
+    }
+    
+    /**
+     * Journal the changed rank and recompile the graph.
+     *
+     * @return false if the change could not be recorded
+     */
+    private boolean saveAndRebuild(FileConfiguration ranksConfig, String rankName) {
+        boolean saved = fileManager.recordChange("ranks.yml", ranksConfig, "ranks." + rankName);
+        rebuildRankGraph();
+        return saved;
     }
     
     /**
@@ -36,7 +112,9 @@ public class RankManager {
         ranksConfig.set("ranks." + rankName + ".inheritance", inheritance != null ? inheritance : new ArrayList<>());
         ranksConfig.set("ranks." + rankName + ".priority", 0);
         
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        boolean saved = saveAndRebuild(ranksConfig, rankName);
+        formatCache.invalidate(rankName);
+        return saved;
     }
     
     /**
@@ -50,7 +128,9 @@ public class RankManager {
         }
         
         ranksConfig.set("ranks." + rankName, null);
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        boolean saved = saveAndRebuild(ranksConfig, rankName);
+        formatCache.invalidate(rankName);
+        return saved;
     }
     
     /**
@@ -81,7 +161,9 @@ public class RankManager {
         ranksConfig.set("ranks." + targetRank + ".track", 
             ranksConfig.getString("ranks." + sourceRank + ".track", "defaultTrack"));
         
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        boolean saved = saveAndRebuild(ranksConfig, targetRank);
+        formatCache.invalidate(targetRank);
+        return saved;
     }
     
     /**
@@ -116,7 +198,11 @@ public class RankManager {
                 return false;
         }
         
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        boolean saved = saveAndRebuild(ranksConfig, rankName);
+        formatCache.invalidate(rankName);
+        // Display settings aren't part of the effective permissions, so push them explicitly
+        changePropagator.propagate(Collections.singleton(rankName), rankGraph);
+        return saved;
     }
     
     /**
@@ -133,7 +219,7 @@ public class RankManager {
         if (!permissions.contains(permission)) {
             permissions.add(permission);
             ranksConfig.set("ranks." + rankName + ".permissions", permissions);
-            return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+            return saveAndRebuild(ranksConfig, rankName);
         }
         
         return true; // Already exists
@@ -152,7 +238,44 @@ public class RankManager {
         List<String> permissions = ranksConfig.getStringList("ranks." + rankName + ".permissions");
         permissions.remove(permission);
         ranksConfig.set("ranks." + rankName + ".permissions", permissions);
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        return saveAndRebuild(ranksConfig, rankName);
+    }
+    
+    /**
+     * Remove every permission from a rank.
+     */
+    public boolean clearPermissions(String rankName) {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        
+        if (!ranksConfig.contains("ranks." + rankName)) {
+            return false;
+        }
+        
+        ranksConfig.set("ranks." + rankName + ".permissions", new ArrayList<>());
+        return saveAndRebuild(ranksConfig, rankName);
+    }
+    
+    /**
+     * Set one setting of a rank that isn't part of its permissions, such as its color,
+     * tags, requirements or price. A null value removes it.
+     *
+     * @param key Path below the rank, e.g. "color" or "requirements.money"
+     */
+    public boolean setRankSetting(String rankName, String key, Object value) {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        
+        if (!ranksConfig.contains("ranks." + rankName)) {
+            return false;
+        }
+        
+        ranksConfig.set("ranks." + rankName + "." + key, value);
+        boolean saved = saveAndRebuild(ranksConfig, rankName);
+        formatCache.invalidate(rankName);
+        if (key.equals("color")) {
+            // Display settings aren't part of the effective permissions, so push them explicitly
+            changePropagator.propagate(Collections.singleton(rankName), rankGraph);
+        }
+        return saved;
     }
     
     /**
@@ -169,7 +292,7 @@ public class RankManager {
         if (!inheritance.contains(parentRank)) {
             inheritance.add(parentRank);
             ranksConfig.set("ranks." + rankName + ".inheritance", inheritance);
-            return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+            return saveAndRebuild(ranksConfig, rankName);
         }
         
         return true; // Already exists
@@ -188,8 +311,52 @@ public class RankManager {
         List<String> inheritance = ranksConfig.getStringList("ranks." + rankName + ".inheritance");
         inheritance.remove(parentRank);
         ranksConfig.set("ranks." + rankName + ".inheritance", inheritance);
-        return fileManager.saveConfigSync("ranks.yml", ranksConfig);
+        return saveAndRebuild(ranksConfig, rankName);
+    }
+    
+    /**
+     * Replace the permissions and inheritance of several existing ranks, journal them and
+     * recompile the graph once. If any of them can't be stored, all of them are put back.
+     *
+     * @param permissions New permission list per rank; ranks not in the map keep theirs
+     * @param inheritance New parent list per rank; ranks not in the map keep theirs
+     * @return false if the edits could not be stored and were rolled back
+     */
+    public boolean applyRankEdits(Map<String, List<String>> permissions, Map<String, List<String>> inheritance) {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        Set<String> ranks = new LinkedHashSet<>(permissions.keySet());
+        ranks.addAll(inheritance.keySet());
+        if (ranks.isEmpty()) {
+            return true;
+        }
+        
+        Map<String, Object> previous = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : permissions.entrySet()) {
+            String path = "ranks." + entry.getKey() + ".permissions";
+            previous.put(path, ranksConfig.get(path));
+            ranksConfig.set(path, entry.getValue());
+        }
+        for (Map.Entry<String, List<String>> entry : inheritance.entrySet()) {
+            String path = "ranks." + entry.getKey() + ".inheritance";
+            previous.put(path, ranksConfig.get(path));
+            ranksConfig.set(path, entry.getValue());
+        }
+        boolean stored = true;
+        for (String rank : ranks) {
+            stored &= fileManager.recordChange("ranks.yml", ranksConfig, "ranks." + rank);
+        }
+        if (!stored) {
+            // Some ranks may already be journaled, so the old values are recorded again
+            for (Map.Entry<String, Object> entry : previous.entrySet()) {
+                ranksConfig.set(entry.getKey(), entry.getValue());
+            }
+            for (String rank : ranks) {
+                fileManager.recordChange("ranks.yml", ranksConfig, "ranks." + rank);
+            }
+            plugin.getLogger().severe("Failed to store edits to " + ranks.size() + " ranks, rolled them back");
+            return false;
+        }
+        rebuildRankGraph();
+        return true;
     }
 }
-
-
@@ -0,0 +1,285 @@
+package com.excrele.managers;
+
+import com.excrele.RankReloadEvent;
+import com.excrele.model.RankDiff;
+import com.excrele.storage.StorageBackend;
+import com.excrele.yaml.ShardedPlayerStore;
+import com.excrele.yaml.YAMLFileManager;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Reloads ranks.yml, tracks.yml and the player files after they are edited on disk.
+ * Files are parsed and compared with the loaded data off the main thread. Only the
+ * differences are applied on the main thread, and affected online players are refreshed
+ * a few per tick. Every reload fires a RankReloadEvent carrying the diff.
+ */
+public class RankReloadManager {
+    private static final long SETTLE_TICKS = 10L;
+    private static final int MAX_ATTEMPTS = 5;
+    
+    private final JavaPlugin plugin;
+    private final YAMLFileManager fileManager;
+    private final SnapshotManager snapshotManager;
+    private final RankManager rankManager;
+    private final StorageBackend storage;
+    private final Consumer<FileConfiguration> ranksConfigUpdater;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Map<String, Object> loadedTracks;
+    
+    /**
+     * @param ranksConfigUpdater Receives the new ranks.yml document once it replaced the old one
+     */
+    public RankReloadManager(JavaPlugin plugin, YAMLFileManager fileManager, SnapshotManager snapshotManager,
+                             RankManager rankManager, StorageBackend storage,
+                             Consumer<FileConfiguration> ranksConfigUpdater) {
+        this.plugin = plugin;
+        this.fileManager = fileManager;
+        this.snapshotManager = snapshotManager;
+        this.rankManager = rankManager;
+        this.storage = storage;
+        this.ranksConfigUpdater = ranksConfigUpdater;
+        this.loadedTracks = readTracks(fileManager.getConfig(getTrackFile()));
+    }
+    
+    /**
+     * Check if a file (relative to the data folder) holds ranks, tracks or player assignments.
+     */
+    public boolean isReloadable(String fileName) {
+        if (fileName.equals("ranks.yml")) {
+            return true;
+        }
+        if (fileName.equals("tracks.yml")) {
+            return fileManager.isUseSplitFiles();
+        }
+        return fileName.startsWith("players/") && isYamlStorage() && fileManager.isUseShardedPlayers();
+    }
+    
+    /**
+     * Reload a file that was edited outside the plugin. Safe to call from any thread;
+     * changes arriving in quick succession are handled together.
+     */
+    public void queueReload(String fileName) {
+        if (!isReloadable(fileName) || !plugin.isEnabled()) {
+            return;
+        }
+        queued.add(fileName);
+        if (scheduled.compareAndSet(false, true)) {
+            // Editors often save in several steps; let the file settle first
+            plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+                scheduled.set(false);
+                List<String> files = new ArrayList<>(queued);
+                queued.removeAll(files);
+                prepareAndApply(files, null, 1);
+            }, SETTLE_TICKS);
+        }
+    }
+    
+    /**
+     * Reload every rank, track and player file in the background, then tell the sender.
+     */
+    public void reloadAll(CommandSender sender) {
+        List<String> files = getReloadableFiles();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> prepareAndApply(files, sender, 1));
+    }
+    
+    /**
+     * Reload every rank, track and player file on the calling (main) thread.
+     *
+     * @return what changed, or null if a file has changes that are still being written
+     */
+    public RankDiff reloadAllNow(CommandSender sender) {
+        List<FileReload> reloads = new ArrayList<>();
+        for (String fileName : getReloadableFiles()) {
+            reloads.add(prepare(fileName));
+        }
+        return apply(reloads, sender, MAX_ATTEMPTS);
+    }
+    
+    private void prepareAndApply(List<String> files, CommandSender sender, int attempt) {
+        List<FileReload> reloads = new ArrayList<>();
+        for (String fileName : files) {
+            reloads.add(prepare(fileName));
+        }
+        plugin.getServer().getScheduler().runTask(plugin, () -> apply(reloads, sender, attempt));
+    }
+    
+    /**
+     * Parse a file and compare it with the loaded data. Runs off the main thread.
+     */
+    private FileReload prepare(String fileName) {
+        YAMLFileManager.ExternalRead read = fileManager.readExternal(fileName);
+        FileConfiguration config = read.getConfig();
+        RankDiff diff = RankDiff.empty();
+        if (fileName.equals("ranks.yml")) {
+            diff.merge(RankDiff.ofRanks(snapshotManager.getSnapshot().getRanks(), SnapshotManager.readRanks(config)));
+            if (isYamlStorage() && !fileManager.isUseShardedPlayers()) {
+                diff.withPlayers(snapshotManager.diffPlayers(readPlayers(config), uuid -> true));
+            }
+        } else if (fileName.startsWith("players/")) {
+            diff.withPlayers(snapshotManager.diffPlayers(readPlayers(config),
+                uuid -> ShardedPlayerStore.getShardFile(uuid).equals(fileName)));
+        }
+        Map<String, Object> tracks = null;
+        if (fileName.equals(getTrackFile())) {
+            tracks = readTracks(config);
+            diff.withTracks(loadedTracks, tracks);
+        }
+        return new FileReload(fileName, read, diff, tracks);
+    }
+    
+    /**
+     * Install the parsed files and apply what changed. Runs on the main thread.
+     * Files that changed again in the meantime are read again.
+     */
+    private RankDiff apply(List<FileReload> reloads, CommandSender sender, int attempt) {
+        RankDiff diff = RankDiff.empty();
+        List<String> retry = new ArrayList<>();
+        for (FileReload reload : reloads) {
+            if (!fileManager.installExternal(reload.fileName, reload.read)) {
+                retry.add(reload.fileName);
+                continue;
+            }
+            if (reload.fileName.equals("ranks.yml")) {
+                ranksConfigUpdater.accept(reload.read.getConfig());
+            }
+            if (reload.tracks != null) {
+                loadedTracks = reload.tracks;
+            }
+            diff.merge(reload.diff);
+        }
+        
+        if (!retry.isEmpty()) {
+            if (attempt < MAX_ATTEMPTS && plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin,
+                    () -> prepareAndApply(retry, sender, attempt + 1), 20L);
+            } else {
+                plugin.getLogger().warning("Could not reload " + retry + ": they keep changing while being read");
+                if (sender != null) {
+                    sender.sendMessage(ChatColor.RED + "Could not reload " + retry + ", try again in a moment.");
+                }
+                if (reloads.size() == retry.size()) {
+                    return null;
+                }
+            }
+        }
+        
+        applyDiff(diff, sender);
+        if (sender != null || !diff.isEmpty()) {
+            CommandSender source = sender != null ? sender : plugin.getServer().getConsoleSender();
+            plugin.getServer().getPluginManager().callEvent(new RankReloadEvent(source, diff));
+        }
+        if (sender != null && retry.isEmpty()) {
+            sender.sendMessage(describe(diff));
+        }
+        return diff;
+    }
+    
+    private void applyDiff(RankDiff diff, CommandSender sender) {
+        RankChangePropagator propagator = rankManager.getChangePropagator();
+        if (diff.hasRankChanges()) {
+            // Permission changes are propagated by the rebuild; prefixes and suffixes below
+            rankManager.rebuildRankGraph();
+            Set<String> ranks = new LinkedHashSet<>(diff.getAddedRanks());
+            ranks.addAll(diff.getRemovedRanks());
+            ranks.addAll(diff.getChangedRanks());
+            for (String rank : ranks) {
+                rankManager.getFormatCache().invalidate(rank);
+            }
+            propagator.propagate(ranks, rankManager.getRankGraph(), sender);
+        }
+        if (!diff.getChangedPlayers().isEmpty()) {
+            snapshotManager.applyStoredPlayerChanges(diff.getChangedPlayers());
+            propagator.refresh(diff.getChangedPlayers().keySet(), sender);
+        }
+    }
+    
+    private String describe(RankDiff diff) {
+        if (diff.isEmpty()) {
+            return ChatColor.GREEN + "Ranks configuration reloaded, nothing changed.";
+        }
+        return ChatColor.GREEN + "Ranks configuration reloaded: "
+            + diff.getAddedRanks().size() + " ranks added, "
+            + diff.getRemovedRanks().size() + " removed, "
+            + diff.getChangedRanks().size() + " changed, "
+            + diff.getChangedTracks().size() + " tracks and "
+            + diff.getChangedPlayers().size() + " players changed.";
+    }
+    
+    private List<String> getReloadableFiles() {
+        List<String> files = new ArrayList<>();
+        files.add("ranks.yml");
+        if (fileManager.isUseSplitFiles()) {
+            files.add("tracks.yml");
+        }
+        if (isYamlStorage() && fileManager.isUseShardedPlayers()) {
+            for (int shard = 0; shard < ShardedPlayerStore.SHARDS; shard++) {
+                String fileName = ShardedPlayerStore.getShardFile(shard);
+                if (new File(fileManager.getDataFolder(), fileName).exists()) {
+                    files.add(fileName);
+                }
+            }
+        }
+        return files;
+    }
+    
+    private String getTrackFile() {
+        return fileManager.isUseSplitFiles() ? "tracks.yml" : "ranks.yml";
+    }
+    
+    private boolean isYamlStorage() {
+        return "yaml".equals(storage.getName());
+    }
+    
+    private Map<String, Object> readTracks(ConfigurationSection config) {
+        ConfigurationSection section = config.getConfigurationSection("progression-tracks");
+        return section != null ? section.getValues(false) : Collections.<String, Object>emptyMap();
+    }
+    
+    private Map<UUID, String> readPlayers(ConfigurationSection config) {
+        Map<UUID, String> players = new LinkedHashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("players");
+        if (section == null) {
+            return players;
+        }
+        for (String key : section.getKeys(false)) {
+            try {
+                players.put(UUID.fromString(key), section.getString(key + ".rank", "default"));
+            } catch (IllegalArgumentException e) {
+                // Invalid UUID, skip
+            }
+        }
+        return players;
+    }
+    
+    private static class FileReload {
+        private final String fileName;
+        private final YAMLFileManager.ExternalRead read;
+        private final RankDiff diff;
+        private final Map<String, Object> tracks;
+        
+        private FileReload(String fileName, YAMLFileManager.ExternalRead read, RankDiff diff, Map<String, Object> tracks) {
+            this.fileName = fileName;
+            this.read = read;
+            this.diff = diff;
+            this.tracks = tracks;
+        }
+    }
+}
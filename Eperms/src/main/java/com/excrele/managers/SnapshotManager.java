@@ -0,0 +1,450 @@
+package com.excrele.managers;
+
+import com.excrele.model.DataSnapshot;
+import com.excrele.model.LruCache;
+import com.excrele.model.PlayerRecord;
+import com.excrele.model.PlayerTable;
+import com.excrele.model.RankMemberIndex;
+import com.excrele.model.RankSnapshot;
+import com.excrele.storage.StorageBackend;
+import com.excrele.yaml.YAMLFileManager;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Publishes the immutable DataSnapshot read model of ranks.yml and player storage.
+ * Every player rank change goes through this class, which writes it to the storage
+ * backend and then swaps in a copy-on-write snapshot; readers on any thread just take the current one.
+ *
+ * With lazy-loading enabled the snapshot only holds online players. Offline ranks are
+ * read from storage on demand and kept in a bounded LRU cache (offline-cache-size), and
+ * member counts and pages are storage queries. Otherwise every player is loaded, and
+ * a rank to members index is kept in step with the snapshot.
+ */
+public class SnapshotManager {
+    private final JavaPlugin plugin;
+    private final YAMLFileManager fileManager;
+    private final StorageBackend storage;
+    private volatile DataSnapshot snapshot;
+    private volatile RankMemberIndex memberIndex;
+    private final boolean lazy;
+    private final LruCache<UUID, String> offlineRanks;
+    // Changes published with applyPlayerChanges that are not stored yet (lazy mode)
+    private final Map<UUID, String> unstored = new ConcurrentHashMap<>();
+    // Bumped on every published change, so a storage read racing one is not cached
+    private volatile long changeCount;
+    
+    public SnapshotManager(JavaPlugin plugin, YAMLFileManager fileManager, StorageBackend storage) {
+        this.plugin = plugin;
+        this.fileManager = fileManager;
+        this.storage = storage;
+        this.snapshot = DataSnapshot.empty();
+        this.memberIndex = new RankMemberIndex();
+        FileConfiguration config = fileManager.getConfig("config.yml");
+        this.lazy = config.getBoolean("lazy-loading", true);
+        this.offlineRanks = new LruCache<>(Math.max(1, config.getInt("offline-cache-size", 1000)));
+    }
+    
+    /**
+     * Get the current snapshot. Safe to call from any thread.
+     */
+    public DataSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Whether only online players are kept in the snapshot.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+    
+    /**
+     * Get a player's rank, online or not. An offline player missing from the cache is
+     * read from storage, so prefer calling this off the main thread for offline players.
+     */
+    public String getPlayerRank(UUID uuid) {
+        PlayerRecord record = snapshot.getPlayers().get(uuid);
+        if (record != null || !lazy) {
+            return snapshot.getPlayerRank(uuid);
+        }
+        String rank = getCachedRank(uuid);
+        if (rank != null) {
+            return rank;
+        }
+        long seen = changeCount;
+        rank = storage.loadPlayerRank(uuid);
+        rank = rank != null ? rank : "default";
+        cacheLoaded(seen, Collections.singletonMap(uuid, rank));
+        return rank;
+    }
+    
+    /**
+     * Get the ranks of several players, online or not. Offline players missing from the
+     * cache are read from storage in one call.
+     */
+    public Map<UUID, String> getPlayerRanks(Collection<UUID> uuids) {
+        DataSnapshot current = snapshot;
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            String rank = null;
+            if (current.getPlayers().get(uuid) != null || !lazy) {
+                rank = current.getPlayerRank(uuid);
+            } else {
+                rank = getCachedRank(uuid);
+                if (rank == null) {
+                    missing.add(uuid);
+                }
+            }
+            ranks.put(uuid, rank);
+        }
+        if (!missing.isEmpty()) {
+            long seen = changeCount;
+            Map<UUID, String> loaded = new LinkedHashMap<>();
+            Map<UUID, String> stored = storage.loadPlayerRanks(missing);
+            for (UUID uuid : missing) {
+                String rank = stored.get(uuid);
+                loaded.put(uuid, rank != null ? rank : "default");
+            }
+            ranks.putAll(loaded);
+            cacheLoaded(seen, loaded);
+        }
+        return ranks;
+    }
+    
+    /**
+     * Get a rank that was published or cached for an offline player, or null if it has to
+     * be read from storage.
+     */
+    private String getCachedRank(UUID uuid) {
+        String rank = unstored.get(uuid);
+        return rank != null ? rank : offlineRanks.get(uuid);
+    }
+    
+    /**
+     * Cache ranks read from storage, unless a change was published while they were read.
+     */
+    private synchronized void cacheLoaded(long seen, Map<UUID, String> loaded) {
+        if (changeCount != seen) {
+            return;
+        }
+        for (Map.Entry<UUID, String> entry : loaded.entrySet()) {
+            if (snapshot.getPlayers().get(entry.getKey()) == null) {
+                offlineRanks.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Get a counter that changes whenever player ranks are published. A rank read before
+     * the counter changed may be out of date.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+    
+    /**
+     * Bring a joining player's record into the snapshot, reading their rank from the cache
+     * or storage. No-op unless lazy-loading is on.
+     */
+    public void loadPlayer(UUID uuid) {
+        if (!lazy || snapshot.getPlayers().get(uuid) != null) {
+            return;
+        }
+        long seen = changeCount;
+        loadPlayer(uuid, getPlayerRank(uuid), seen);
+    }
+    
+    /**
+     * Bring a joining player's record into the snapshot with a rank read ahead of time,
+     * when {@link #getChangeCount()} returned seen. No-op unless lazy-loading is on.
+     */
+    public void loadPlayer(UUID uuid, String rank, long seen) {
+        if (!lazy) {
+            return;
+        }
+        synchronized (this) {
+            if (snapshot.getPlayers().get(uuid) != null) {
+                return;
+            }
+            if (changeCount != seen) {
+                // Changes are written through to the cache; if it lost the entry, read again
+                String cached = getCachedRank(uuid);
+                rank = cached != null ? cached : getPlayerRank(uuid);
+            }
+            List<PlayerRecord> records = Collections.singletonList(new PlayerRecord(uuid, rank));
+            snapshot = snapshot.withPlayers(snapshot.getPlayers().withAll(records));
+        }
+    }
+    
+    /**
+     * Drop a leaving player's record from the snapshot, keeping their rank in the offline
+     * cache. No-op unless lazy-loading is on.
+     */
+    public synchronized void unloadPlayer(UUID uuid) {
+        if (!lazy) {
+            return;
+        }
+        PlayerRecord record = snapshot.getPlayers().get(uuid);
+        if (record != null) {
+            offlineRanks.put(uuid, record.getRank());
+            snapshot = snapshot.withPlayers(snapshot.getPlayers().without(uuid));
+        }
+    }
+    
+    /**
+     * Get the number of players assigned to a rank. With lazy-loading this queries
+     * storage, so bulk changes count once they are stored.
+     */
+    public int getMemberCount(String rank) {
+        return lazy ? storage.countRankMembers(rank) : memberIndex.count(rank);
+    }
+    
+    /**
+     * Get all players assigned to a rank.
+     */
+    public Set<UUID> getMembers(String rank) {
+        if (!lazy) {
+            return memberIndex.getMembers(rank);
+        }
+        return Collections.unmodifiableSet(new LinkedHashSet<>(storage.getRankMembers(rank, 0, Integer.MAX_VALUE)));
+    }
+    
+    /**
+     * Get one page of a rank's members, ordered by UUID.
+     *
+     * @param page     Zero-based page number
+     * @param pageSize Players per page
+     */
+    public List<UUID> getMembers(String rank, int page, int pageSize) {
+        if (!lazy) {
+            return memberIndex.getMembers(rank, page, pageSize);
+        }
+        long offset = (long) page * pageSize;
+        if (page < 0 || pageSize <= 0 || offset > Integer.MAX_VALUE) {
+            return new ArrayList<>();
+        }
+        return storage.getRankMembers(rank, (int) offset, pageSize);
+    }
+    
+    /**
+     * Rebuild ranks from ranks.yml and players from storage. With lazy-loading only
+     * online players are read, and the offline cache starts empty.
+     */
+    public synchronized void reload() {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        List<PlayerRecord> records = new ArrayList<>();
+        if (lazy) {
+            List<UUID> online = new ArrayList<>();
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                online.add(player.getUniqueId());
+            }
+            Map<UUID, String> stored = storage.loadPlayerRanks(online);
+            for (UUID uuid : online) {
+                String rank = unstored.containsKey(uuid) ? unstored.get(uuid) : stored.get(uuid);
+                records.add(new PlayerRecord(uuid, rank != null ? rank : "default"));
+            }
+            offlineRanks.clear();
+        } else {
+            for (Map.Entry<UUID, String> entry : storage.loadPlayerRanks().entrySet()) {
+                records.add(new PlayerRecord(entry.getKey(), entry.getValue()));
+            }
+        }
+        PlayerTable table = PlayerTable.of(records);
+        memberIndex = lazy ? new RankMemberIndex() : RankMemberIndex.of(table);
+        changeCount++;
+        snapshot = new DataSnapshot(readRanks(ranksConfig), table);
+    }
+    
+    /**
+     * Rebuild only the rank definitions, keeping player assignments.
+     */
+    public synchronized void refreshRanks() {
+        snapshot = snapshot.withRanks(readRanks(fileManager.getConfig("ranks.yml")));
+    }
+    
+    /**
+     * Set a player's rank in storage and publish it.
+     *
+     * @return false if it could not be stored, in which case nothing changed
+     */
+    public synchronized boolean setPlayerRank(UUID uuid, String rank) {
+        return setPlayerRanks(Collections.singletonMap(uuid, rank));
+    }
+    
+    /**
+     * Set several player ranks at once, publishing a single snapshot.
+     *
+     * @return false if they could not be stored, in which case nothing changed
+     */
+    public synchronized boolean setPlayerRanks(Map<UUID, String> ranks) {
+        if (!storage.setPlayerRanks(ranks)) {
+            return false;
+        }
+        changeCount++;
+        PlayerTable players = snapshot.getPlayers();
+        List<PlayerRecord> records = new ArrayList<>(ranks.size());
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            PlayerRecord previous = players.get(entry.getKey());
+            if (lazy) {
+                unstored.remove(entry.getKey());
+                // Only loaded players belong in the snapshot; the cache takes the rest
+                if (previous != null) {
+                    records.add(new PlayerRecord(entry.getKey(), entry.getValue()));
+                } else {
+                    offlineRanks.put(entry.getKey(), entry.getValue());
+                }
+                continue;
+            }
+            records.add(new PlayerRecord(entry.getKey(), entry.getValue()));
+            memberIndex.move(entry.getKey(), previous != null ? previous.getRank() : null, entry.getValue());
+        }
+        snapshot = snapshot.withPlayers(snapshot.getPlayers().withAll(records));
+        return true;
+    }
+    
+    /**
+     * Store player ranks that were already published with {@link #applyPlayerChanges},
+     * skipping any player whose rank has changed again since.
+     *
+     * @return the ranks that were stored
+     */
+    public synchronized Map<UUID, String> persistPlayerRanks(Map<UUID, String> ranks) {
+        Map<UUID, String> current = new LinkedHashMap<>();
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            if (entry.getValue().equals(getPlayerRank(entry.getKey()))) {
+                current.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!current.isEmpty()) {
+            storage.setPlayerRanks(current);
+        }
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            unstored.remove(entry.getKey(), entry.getValue());
+        }
+        return current;
+    }
+    
+    /**
+     * Compare player assignments read from a file with the published ones.
+     *
+     * @param stored Every assignment in the file
+     * @param scope  Which players the file holds (all of them for ranks.yml, one shard's otherwise)
+     * @return players whose rank differs, mapped to the stored rank (null if the file has none)
+     */
+    public Map<UUID, String> diffPlayers(Map<UUID, String> stored, Predicate<UUID> scope) {
+        DataSnapshot current = snapshot;
+        Map<UUID, String> changed = new LinkedHashMap<>();
+        for (Map.Entry<UUID, String> entry : stored.entrySet()) {
+            PlayerRecord record = current.getPlayers().get(entry.getKey());
+            String published = record != null ? record.getRank() : lazy ? getCachedRank(entry.getKey()) : null;
+            // An offline player nobody has looked up is read from the new file when needed
+            if (record == null && lazy && published == null) {
+                continue;
+            }
+            if (!entry.getValue().equals(published)) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (PlayerRecord record : current.getPlayers().records()) {
+            if (scope.test(record.getUuid()) && !stored.containsKey(record.getUuid()) && record.getRank() != null
+                    && !(lazy && "default".equals(record.getRank()))) {
+                changed.put(record.getUuid(), null);
+            }
+        }
+        if (lazy) {
+            for (UUID uuid : offlineRanks.keys()) {
+                String cached = getCachedRank(uuid);
+                if (scope.test(uuid) && !stored.containsKey(uuid) && cached != null && !"default".equals(cached)
+                        && current.getPlayers().get(uuid) == null) {
+                    changed.put(uuid, null);
+                }
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Publish part of a bulk change that is stored at the end with {@link #persistPlayerRanks}.
+     * Until then offline players' new ranks are held in memory.
+     */
+    public synchronized void applyPlayerChanges(Map<UUID, String> changes) {
+        publish(changes, false);
+    }
+    
+    /**
+     * Publish player assignments that are already in storage, e.g. an edited ranks.yml
+     * that has been loaded.
+     */
+    public synchronized void applyStoredPlayerChanges(Map<UUID, String> changes) {
+        publish(changes, true);
+    }
+    
+    private void publish(Map<UUID, String> changes, boolean stored) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        changeCount++;
+        PlayerTable players = snapshot.getPlayers();
+        List<PlayerRecord> records = new ArrayList<>();
+        for (Map.Entry<UUID, String> entry : changes.entrySet()) {
+            UUID uuid = entry.getKey();
+            PlayerRecord previous = players.get(uuid);
+            if (lazy) {
+                String rank = entry.getValue() != null ? entry.getValue() : "default";
+                if (stored) {
+                    unstored.remove(uuid);
+                } else {
+                    unstored.put(uuid, rank);
+                }
+                if (previous != null) {
+                    records.add(new PlayerRecord(uuid, rank));
+                } else {
+                    offlineRanks.put(uuid, rank);
+                }
+                continue;
+            }
+            memberIndex.move(uuid, previous != null ? previous.getRank() : null, entry.getValue());
+            if (entry.getValue() != null) {
+                records.add(new PlayerRecord(uuid, entry.getValue()));
+            } else {
+                players = players.without(uuid);
+            }
+        }
+        snapshot = snapshot.withPlayers(players.withAll(records));
+    }
+    
+    /**
+     * Read the rank definitions of a ranks.yml document.
+     */
+    public static Map<String, RankSnapshot> readRanks(ConfigurationSection ranksConfig) {
+        Map<String, RankSnapshot> ranks = new LinkedHashMap<>();
+        ConfigurationSection section = ranksConfig.getConfigurationSection("ranks");
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                ranks.put(name, new RankSnapshot(name,
+                    section.getString(name + ".info.prefix", ""),
+                    section.getString(name + ".info.suffix", ""),
+                    section.getInt(name + ".priority", 0),
+                    section.getStringList(name + ".permissions"),
+                    section.getStringList(name + ".inheritance")));
+            }
+        }
+        return Collections.unmodifiableMap(ranks);
+    }
+}
@@ -0,0 +1,111 @@
+package com.excrele.managers;
+
+import com.excrele.model.RankSnapshot;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Orders the tab list by rank priority using one main-scoreboard team per rank.
+ * Clients sort tab entries by team name, so the name starts with the inverted priority;
+ * players are only moved between teams on join, rank change or priority edit.
+ */
+public class TabListManager {
+    private static final String TEAM_PREFIX = "ep";
+    private static final int PRIORITY_OFFSET = 50000;
+    private static final int PRIORITY_SLOTS = 99999;
+    private static final Pattern TEAM_NAME = Pattern.compile("ep\\d{5}[0-9a-f]{8}");
+    
+    private final JavaPlugin plugin;
+    private final SnapshotManager snapshotManager;
+    
+    public TabListManager(JavaPlugin plugin, SnapshotManager snapshotManager) {
+        this.plugin = plugin;
+        this.snapshotManager = snapshotManager;
+    }
+    
+    /**
+     * Get the team name for a rank: "ep" + 5-digit inverted priority + rank hash (15 chars).
+     * Higher priority sorts first; ranks of equal priority get separate teams.
+     */
+    static String getTeamName(String rank, int priority) {
+        int slot = Math.max(0, Math.min(PRIORITY_SLOTS, PRIORITY_OFFSET - priority));
+        return String.format("%s%05d%08x", TEAM_PREFIX, slot, rank.hashCode());
+    }
+    
+    /**
+     * Put a player in the team of their current rank. Does nothing if they are already in it.
+     */
+    public void update(Player player) {
+        String rank = snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId());
+        RankSnapshot rankInfo = snapshotManager.getSnapshot().getRank(rank);
+        String teamName = getTeamName(rank, rankInfo != null ? rankInfo.getPriority() : 0);
+        
+        Scoreboard scoreboard = getScoreboard();
+        Team current = scoreboard.getEntryTeam(player.getName());
+        if (current != null && current.getName().equals(teamName)) {
+            return;
+        }
+        if (current != null && isRankTeam(current)) {
+            current.removeEntry(player.getName());
+            unregisterIfEmpty(current);
+        }
+        
+        Team team = scoreboard.getTeam(teamName);
+        if (team == null) {
+            team = scoreboard.registerNewTeam(teamName);
+        }
+        team.addEntry(player.getName());
+    }
+    
+    /**
+     * Re-sort online players of a rank after its priority changed.
+     */
+    public void refreshRank(String rank) {
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            if (rank.equals(snapshotManager.getSnapshot().getPlayerRank(player.getUniqueId()))) {
+                update(player);
+            }
+        }
+    }
+    
+    /**
+     * Take a player out of their rank team, e.g. when they leave.
+     */
+    public void remove(Player player) {
+        Team current = getScoreboard().getEntryTeam(player.getName());
+        if (current != null && isRankTeam(current)) {
+            current.removeEntry(player.getName());
+            unregisterIfEmpty(current);
+        }
+    }
+    
+    /**
+     * Unregister every rank team, including ones left behind by an unclean shutdown.
+     */
+    public void clear() {
+        for (Team team : new ArrayList<>(getScoreboard().getTeams())) {
+            if (isRankTeam(team)) {
+                team.unregister();
+            }
+        }
+    }
+    
+    private boolean isRankTeam(Team team) {
+        return TEAM_NAME.matcher(team.getName()).matches();
+    }
+    
+    private void unregisterIfEmpty(Team team) {
+        if (team.getSize() == 0) {
+            team.unregister();
+        }
+    }
+    
+    private Scoreboard getScoreboard() {
+        return plugin.getServer().getScoreboardManager().getMainScoreboard();
+    }
+}
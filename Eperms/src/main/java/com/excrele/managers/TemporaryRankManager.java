@@ -1,57 +1,73 @@
 package com.excrele.managers;
 
-import com.excrele.yaml.YAMLFileManager;
-import org.bukkit.configuration.file.FileConfiguration;
+import com.excrele.permissions.RankPermissionRegistry;
+import com.excrele.storage.StorageBackend;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Manages temporary ranks with expiration.
+ * Manages timed grants with expiration: any number of extra ranks or single permission
+ * nodes per player, stacked on top of their rank, each with its own expiration and
+ * optionally limited to one world. A temporary rank is a rank grant; the player's own
+ * rank is left alone, so promotions made meanwhile are kept when it ends.
+ *
+ * Expirations are kept in one min-heap ordered by expiration time, and a
+ * single task is scheduled for the earliest one, so everything expires on time without
+ * scanning. Whatever expires together is removed in one write. A player's granted
+ * permissions are only rebuilt when one of their grants starts or ends, or when they
+ * change worlds. Must be used from the main thread, except for
+ * {@link #prepareGrantedPermissions}: grant lists are replaced, never changed in place,
+ * so a joining player's permissions can be worked out on the pre-login thread.
  */
 public class TemporaryRankManager {
+    private static final long MILLIS_PER_TICK = 50L;
+    // Ticks run slower than the clock when the server lags, so check again at least this often
+    private static final long MAX_WAIT_TICKS = 20L * 60;
+    
     private final JavaPlugin plugin;
-    private final YAMLFileManager fileManager;
-    private final Map<UUID, TemporaryRankInfo> temporaryRanks;
-    @SuppressWarnings("unused")
+    private final StorageBackend storage;
+    private final SnapshotManager snapshotManager;
+    private final Consumer<Player> permissionRefresher;
+    private final Map<UUID, List<TemporaryGrant>> grants; // read-only lists
+    private final Map<UUID, GrantedPermissions> grantedPermissions;
+    private final PriorityQueue<Expiry> expiries;
     private BukkitTask expirationTask;
+    private long scheduledFor = Long.MAX_VALUE;
     
-    public TemporaryRankManager(JavaPlugin plugin, YAMLFileManager fileManager) {
+    public TemporaryRankManager(JavaPlugin plugin, StorageBackend storage, SnapshotManager snapshotManager,
+                                Consumer<Player> permissionRefresher) {
         this.plugin = plugin;
-        this.fileManager = fileManager;
-        this.temporaryRanks = new HashMap<>();
-        startExpirationChecker();
+        this.storage = storage;
+        this.snapshotManager = snapshotManager;
+        this.permissionRefresher = permissionRefresher;
+        this.grants = new ConcurrentHashMap<>();
+        this.grantedPermissions = new HashMap<>();
+        this.expiries = new PriorityQueue<>(Comparator.comparingLong(expiry -> expiry.expirationTime));
     }
     
     /**
-     * Assign a temporary rank to a player.
+     * Give a player an extra rank for a while, as a rank grant on top of their own rank.
      */
     public boolean assignTemporaryRank(UUID playerUUID, String rank, long durationMillis) {
-        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
-        
-        long expirationTime = System.currentTimeMillis() + durationMillis;
-        String expirationTimeStr = String.valueOf(expirationTime);
-        
-        // Store original rank
-        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-        String originalRank = ranksConfig.getString("players." + playerUUID + ".rank", "default");
-        
-        tempConfig.set("players." + playerUUID + ".rank", rank);
-        tempConfig.set("players." + playerUUID + ".original-rank", originalRank);
-        tempConfig.set("players." + playerUUID + ".expiration", expirationTimeStr);
-        tempConfig.set("players." + playerUUID + ".assigned-at", System.currentTimeMillis());
-        
-        fileManager.saveConfigSync("temporary-ranks.yml", tempConfig);
-        
-        // Store in memory
-        temporaryRanks.put(playerUUID, new TemporaryRankInfo(rank, originalRank, expirationTime));
-        
+        addTemporaryGrant(playerUUID, new TemporaryGrant(TemporaryGrant.Kind.RANK, rank, true, null,
+            System.currentTimeMillis() + durationMillis));
         return true;
     }
     
@@ -90,97 +106,266 @@ public class TemporaryRankManager {
     }
     
     /**
-     * Cancel a temporary rank.
+     * Remove every rank grant of a player before it expires.
+     *
+     * @return false if the player has none
      */
     public boolean cancelTemporaryRank(UUID playerUUID) {
-        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
-        
-        if (!tempConfig.contains("players." + playerUUID)) {
+        List<TemporaryGrant> playerGrants = new ArrayList<>(getTemporaryGrants(playerUUID));
+        if (!playerGrants.removeIf(grant -> grant.getKind() == TemporaryGrant.Kind.RANK)) {
             return false;
         }
-        
-        String originalRank = tempConfig.getString("players." + playerUUID + ".original-rank", "default");
-        
-        // Restore original rank
-        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-        ranksConfig.set("players." + playerUUID + ".rank", originalRank);
-        fileManager.saveConfigSync("ranks.yml", ranksConfig);
-        
-        // Remove from temp config
-        tempConfig.set("players." + playerUUID, null);
-        fileManager.saveConfigSync("temporary-ranks.yml", tempConfig);
-        
-        temporaryRanks.remove(playerUUID);
-        
+        // Their heap entries are skipped once they come up
+        saveGrants(playerUUID, playerGrants);
+        onGrantsChanged(playerUUID);
         return true;
     }
     
     /**
-     * Get temporary rank info.
+     * Check if player has a temporary rank, i.e. a rank grant.
      */
-    public TemporaryRankInfo getTemporaryRank(UUID playerUUID) {
-        return temporaryRanks.get(playerUUID);
+    public boolean hasTemporaryRank(UUID playerUUID) {
+        for (TemporaryGrant grant : getTemporaryGrants(playerUUID)) {
+            if (grant.getKind() == TemporaryGrant.Kind.RANK) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
-     * Check if player has temporary rank.
+     * Grant a player an extra rank or permission node for a while, on top of their rank.
      */
-    public boolean hasTemporaryRank(UUID playerUUID) {
-        return temporaryRanks.containsKey(playerUUID) && 
-               temporaryRanks.get(playerUUID).getExpirationTime() > System.currentTimeMillis();
+    public void addTemporaryGrant(UUID playerUUID, TemporaryGrant grant) {
+        List<TemporaryGrant> playerGrants = new ArrayList<>(getTemporaryGrants(playerUUID));
+        playerGrants.add(grant);
+        saveGrants(playerUUID, playerGrants);
+        expiries.add(new Expiry(playerUUID, grant.getExpirationTime(), grant));
+        schedule();
+        onGrantsChanged(playerUUID);
     }
     
     /**
-     * Start expiration checker task.
+     * Remove one timed grant before it expires.
+     *
+     * @return false if the player doesn't have that grant
      */
-    private void startExpirationChecker() {
-        expirationTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            long currentTime = System.currentTimeMillis();
-            Map<UUID, TemporaryRankInfo> toRemove = new HashMap<>();
-            
-            for (Map.Entry<UUID, TemporaryRankInfo> entry : temporaryRanks.entrySet()) {
-                if (entry.getValue().getExpirationTime() <= currentTime) {
-                    toRemove.put(entry.getKey(), entry.getValue());
+    public boolean removeTemporaryGrant(UUID playerUUID, TemporaryGrant grant) {
+        List<TemporaryGrant> playerGrants = new ArrayList<>(getTemporaryGrants(playerUUID));
+        if (!removeSame(playerGrants, grant)) {
+            return false;
+        }
+        // Its heap entry is skipped once it comes up
+        saveGrants(playerUUID, playerGrants);
+        onGrantsChanged(playerUUID);
+        return true;
+    }
+    
+    /**
+     * Remove every timed grant of a player.
+     *
+     * @return the number of grants removed
+     */
+    public int clearTemporaryGrants(UUID playerUUID) {
+        List<TemporaryGrant> playerGrants = grants.remove(playerUUID);
+        if (playerGrants == null) {
+            return 0;
+        }
+        storage.saveTemporaryGrants(playerUUID, Collections.<TemporaryGrant>emptyList());
+        onGrantsChanged(playerUUID);
+        return playerGrants.size();
+    }
+    
+    /**
+     * Get a player's timed grants, oldest first (read-only).
+     */
+    public List<TemporaryGrant> getTemporaryGrants(UUID playerUUID) {
+        List<TemporaryGrant> playerGrants = grants.get(playerUUID);
+        return playerGrants != null ? playerGrants : Collections.<TemporaryGrant>emptyList();
+    }
+    
+    /**
+     * Check if any of a player's timed grants is limited to a world, i.e. whether their
+     * permissions change with the world they are in.
+     */
+    public boolean hasWorldGrants(UUID playerUUID) {
+        List<TemporaryGrant> playerGrants = grants.get(playerUUID);
+        if (playerGrants != null) {
+            for (TemporaryGrant grant : playerGrants) {
+                if (grant.getWorld() != null) {
+                    return true;
                 }
             }
-            
-            // Expire ranks
-            for (Map.Entry<UUID, TemporaryRankInfo> entry : toRemove.entrySet()) {
-                UUID playerUUID = entry.getKey();
-                TemporaryRankInfo info = entry.getValue();
-                
-                // Restore original rank
-                FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-                ranksConfig.set("players." + playerUUID + ".rank", info.getOriginalRank());
-                fileManager.saveConfigSync("ranks.yml", ranksConfig);
-                
-                // Remove from temp config
-                FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
-                tempConfig.set("players." + playerUUID, null);
-                fileManager.saveConfigSync("temporary-ranks.yml", tempConfig);
-                
-                temporaryRanks.remove(playerUUID);
-                
-                // Notify player if online
-                Player player = plugin.getServer().getPlayer(playerUUID);
-                if (player != null) {
-                    player.sendMessage(org.bukkit.ChatColor.YELLOW + 
-                        "Your temporary rank has expired. You have been restored to: " + info.getOriginalRank());
+        }
+        return false;
+    }
+    
+    /**
+     * Get the permission nodes a player's timed grants give them in their current world.
+     * Granted ranks appear as their shared rank node. Later grants win over earlier ones.
+     * The result is kept until a grant starts or ends or the player changes worlds.
+     */
+    public Map<String, Boolean> getGrantedPermissions(Player player) {
+        List<TemporaryGrant> playerGrants = grants.get(player.getUniqueId());
+        if (playerGrants == null) {
+            return Collections.emptyMap();
+        }
+        String world = player.getWorld().getName();
+        GrantedPermissions cached = grantedPermissions.get(player.getUniqueId());
+        if (cached != null && cached.world.equals(world)) {
+            return cached.permissions;
+        }
+        Map<String, Boolean> permissions = resolve(playerGrants, world);
+        grantedPermissions.put(player.getUniqueId(), new GrantedPermissions(world, permissions));
+        return permissions;
+    }
+    
+    /**
+     * Work out the permissions a player's timed grants give them in every world, ahead of
+     * their join. Safe to call from any thread.
+     */
+    public PreparedGrants prepareGrantedPermissions(UUID playerUUID) {
+        List<TemporaryGrant> playerGrants = grants.get(playerUUID);
+        if (playerGrants == null) {
+            return new PreparedGrants(null, Collections.<String, Map<String, Boolean>>emptyMap(),
+                Collections.<String, Boolean>emptyMap());
+        }
+        Map<String, Map<String, Boolean>> byWorld = new HashMap<>();
+        for (TemporaryGrant grant : playerGrants) {
+            String world = grant.getWorld();
+            if (world != null && !byWorld.containsKey(world.toLowerCase())) {
+                byWorld.put(world.toLowerCase(), resolve(playerGrants, world));
+            }
+        }
+        // Grants limited to a world don't apply in worlds that none of them name
+        return new PreparedGrants(playerGrants, byWorld, resolve(playerGrants, null));
+    }
+    
+    /**
+     * Use permissions prepared with {@link #prepareGrantedPermissions} for a joining
+     * player, unless their grants changed since.
+     *
+     * @return false if they are out of date
+     */
+    public boolean usePreparedPermissions(Player player, PreparedGrants prepared) {
+        if (grants.get(player.getUniqueId()) != prepared.source) {
+            return false;
+        }
+        if (prepared.source != null) {
+            String world = player.getWorld().getName();
+            grantedPermissions.put(player.getUniqueId(), new GrantedPermissions(world, prepared.get(world)));
+        }
+        return true;
+    }
+    
+    private static Map<String, Boolean> resolve(List<TemporaryGrant> playerGrants, String world) {
+        Map<String, Boolean> permissions = new LinkedHashMap<>();
+        for (TemporaryGrant grant : playerGrants) {
+            if (world != null ? grant.appliesIn(world) : grant.getWorld() == null) {
+                String node = grant.getKind() == TemporaryGrant.Kind.RANK
+                    ? RankPermissionRegistry.getRankNode(grant.getNode()) : grant.getNode();
+                permissions.remove(node);
+                permissions.put(node, grant.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(permissions);
+    }
+    
+    /**
+     * Forget the granted permissions worked out for a player, e.g. when they leave.
+     */
+    public void unloadPlayer(UUID playerUUID) {
+        grantedPermissions.remove(playerUUID);
+    }
+    
+    private void onGrantsChanged(UUID playerUUID) {
+        grantedPermissions.remove(playerUUID);
+        Player player = plugin.getServer().getPlayer(playerUUID);
+        if (player != null) {
+            permissionRefresher.accept(player);
+        }
+    }
+    
+    /**
+     * Replace a player's grant list and store it.
+     */
+    private void saveGrants(UUID playerUUID, List<TemporaryGrant> playerGrants) {
+        if (playerGrants.isEmpty()) {
+            grants.remove(playerUUID);
+        } else {
+            grants.put(playerUUID, Collections.unmodifiableList(playerGrants));
+        }
+        storage.saveTemporaryGrants(playerUUID, playerGrants);
+    }
+    
+    private static boolean removeSame(List<TemporaryGrant> playerGrants, TemporaryGrant grant) {
+        for (Iterator<TemporaryGrant> iterator = playerGrants.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == grant) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Make sure the expiration task runs by the earliest expiration time.
+     */
+    private void schedule() {
+        Expiry next = expiries.peek();
+        if (next == null || next.expirationTime >= scheduledFor || !plugin.isEnabled()) {
+            return;
+        }
+        if (expirationTask != null) {
+            expirationTask.cancel();
+        }
+        scheduledFor = next.expirationTime;
+        long wait = scheduledFor - System.currentTimeMillis();
+        long ticks = Math.max(1L, Math.min(MAX_WAIT_TICKS, (wait + MILLIS_PER_TICK - 1) / MILLIS_PER_TICK));
+        expirationTask = plugin.getServer().getScheduler().runTaskLater(plugin, this::expireDue, ticks);
+    }
+    
+    /**
+     * Expire every temporary rank and grant that is due, then wait for the next one.
+     */
+    private void expireDue() {
+        expirationTask = null;
+        scheduledFor = Long.MAX_VALUE;
+        long currentTime = System.currentTimeMillis();
+        Map<UUID, List<TemporaryGrant>> expiredGrants = new LinkedHashMap<>(); // remaining grants
+        while (!expiries.isEmpty() && expiries.peek().expirationTime <= currentTime) {
+            Expiry expiry = expiries.poll();
+            // Cancelled or replaced entries leave a stale heap entry behind
+            TemporaryGrant grant = expiry.entry;
+            List<TemporaryGrant> playerGrants = expiredGrants.containsKey(expiry.playerUUID)
+                ? expiredGrants.get(expiry.playerUUID) : new ArrayList<>(getTemporaryGrants(expiry.playerUUID));
+            if (removeSame(playerGrants, grant)) {
+                expiredGrants.put(expiry.playerUUID, playerGrants);
+                Player player = plugin.getServer().getPlayer(expiry.playerUUID);
+                if (player != null && grant.getKind() == TemporaryGrant.Kind.RANK) {
+                    player.sendMessage(org.bukkit.ChatColor.YELLOW + "Your temporary rank " + grant.getNode() + " has expired.");
                 }
             }
-        }, 0L, 20L * 60); // Check every minute
+        }
+        for (Map.Entry<UUID, List<TemporaryGrant>> entry : expiredGrants.entrySet()) {
+            saveGrants(entry.getKey(), entry.getValue());
+            onGrantsChanged(entry.getKey());
+        }
+        schedule();
     }
     
     /**
-     * Get all active temporary ranks.
+     * Get every player's active rank grants.
      */
-    public Map<UUID, TemporaryRankInfo> getAllTemporaryRanks() {
-        Map<UUID, TemporaryRankInfo> activeRanks = new HashMap<>();
+    public Map<UUID, List<TemporaryGrant>> getAllTemporaryRanks() {
+        Map<UUID, List<TemporaryGrant>> activeRanks = new LinkedHashMap<>();
         long currentTime = System.currentTimeMillis();
         
-        for (Map.Entry<UUID, TemporaryRankInfo> entry : temporaryRanks.entrySet()) {
-            if (entry.getValue().getExpirationTime() > currentTime) {
-                activeRanks.put(entry.getKey(), entry.getValue());
+        for (Map.Entry<UUID, List<TemporaryGrant>> entry : grants.entrySet()) {
+            for (TemporaryGrant grant : entry.getValue()) {
+                if (grant.getKind() == TemporaryGrant.Kind.RANK && grant.getExpirationTime() > currentTime) {
+                    activeRanks.computeIfAbsent(entry.getKey(), uuid -> new ArrayList<>()).add(grant);
+                }
             }
         }
         
@@ -188,38 +373,64 @@ public class TemporaryRankManager {
     }
     
     /**
-     * Load temporary ranks from file.
+     * Load timed grants from storage. Nothing expires until {@link #start()} is called.
      */
     public void loadTemporaryRanks() {
-        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
-        
-        if (!tempConfig.contains("players")) {
+        for (Map.Entry<UUID, List<TemporaryGrant>> entry : storage.loadTemporaryGrants().entrySet()) {
+            grants.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            for (TemporaryGrant grant : entry.getValue()) {
+                expiries.add(new Expiry(entry.getKey(), grant.getExpirationTime(), grant));
+            }
+        }
+    }
+    
+    /**
+     * Convert old-style temporary ranks, which replaced the player's rank and kept an
+     * original-rank to restore, into rank grants, then remove whatever expired while the
+     * server was down and schedule the next expiration. Both change ranks and refresh
+     * players, so call this once the snapshot, the rank graph and player permissions are set up.
+     */
+    public void start() {
+        migrateTemporaryRanks();
+        expireDue();
+    }
+    
+    private void migrateTemporaryRanks() {
+        Map<UUID, TemporaryRankInfo> legacy = storage.loadTemporaryRanks();
+        if (legacy.isEmpty()) {
             return;
         }
-        
-        for (String playerKey : tempConfig.getConfigurationSection("players").getKeys(false)) {
-            try {
-                UUID playerUUID = UUID.fromString(playerKey);
-                String rank = tempConfig.getString("players." + playerKey + ".rank");
-                String originalRank = tempConfig.getString("players." + playerKey + ".original-rank", "default");
-                long expiration = tempConfig.getLong("players." + playerKey + ".expiration", 0);
-                
-                if (expiration > System.currentTimeMillis()) {
-                    temporaryRanks.put(playerUUID, new TemporaryRankInfo(rank, originalRank, expiration));
-                } else {
-                    // Expired, clean up
-                    tempConfig.set("players." + playerKey, null);
-                }
-            } catch (IllegalArgumentException e) {
-                // Invalid UUID, skip
+        long currentTime = System.currentTimeMillis();
+        Map<UUID, String> current = snapshotManager.getPlayerRanks(legacy.keySet());
+        Map<UUID, String> restored = new LinkedHashMap<>();
+        for (Map.Entry<UUID, TemporaryRankInfo> entry : legacy.entrySet()) {
+            UUID playerUUID = entry.getKey();
+            TemporaryRankInfo info = entry.getValue();
+            // Only undo the switch if nothing changed their rank since
+            if (info.getRank().equals(current.get(playerUUID)) && !info.getRank().equals(info.getOriginalRank())) {
+                restored.put(playerUUID, info.getOriginalRank());
+            }
+            if (info.getExpirationTime() > currentTime) {
+                TemporaryGrant grant = new TemporaryGrant(TemporaryGrant.Kind.RANK, info.getRank(), true, null,
+                    info.getExpirationTime());
+                List<TemporaryGrant> playerGrants = new ArrayList<>(getTemporaryGrants(playerUUID));
+                playerGrants.add(grant);
+                saveGrants(playerUUID, playerGrants);
+                expiries.add(new Expiry(playerUUID, grant.getExpirationTime(), grant));
             }
         }
-        
-        fileManager.saveConfigSync("temporary-ranks.yml", tempConfig);
+        if (!restored.isEmpty()) {
+            snapshotManager.setPlayerRanks(restored);
+        }
+        storage.removeTemporaryRanks(legacy.keySet());
+        for (UUID playerUUID : legacy.keySet()) {
+            onGrantsChanged(playerUUID);
+        }
+        plugin.getLogger().info("Converted " + legacy.size() + " temporary ranks to timed rank grants");
     }
     
     /**
-     * Temporary rank info.
+     * Old-style temporary rank as kept in storage; converted to a rank grant at start.
      */
     public static class TemporaryRankInfo {
         private final String rank;
@@ -248,6 +459,112 @@ public class TemporaryRankManager {
             return Math.max(0, expirationTime - System.currentTimeMillis());
         }
     }
+    
+    /**
+     * A rank or permission node granted to a player until it expires, on top of their rank.
+     */
+    public static class TemporaryGrant {
+        public enum Kind {
+            RANK,
+            PERMISSION
+        }
+        
+        private final Kind kind;
+        private final String node;
+        private final boolean value;
+        private final String world;
+        private final long expirationTime;
+        
+        /**
+         * @param node  The rank name or permission node
+         * @param value Whether a permission node is granted or denied; ranks are always granted
+         * @param world The world the grant is limited to, or null for every world
+         */
+        public TemporaryGrant(Kind kind, String node, boolean value, String world, long expirationTime) {
+            this.kind = Objects.requireNonNull(kind);
+            this.node = Objects.requireNonNull(node);
+            this.value = kind == Kind.RANK || value;
+            this.world = world;
+            this.expirationTime = expirationTime;
+        }
+        
+        public Kind getKind() {
+            return kind;
+        }
+        
+        public String getNode() {
+            return node;
+        }
+        
+        public boolean getValue() {
+            return value;
+        }
+        
+        public String getWorld() {
+            return world;
+        }
+        
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+        
+        public long getRemainingTime() {
+            return Math.max(0, expirationTime - System.currentTimeMillis());
+        }
+        
+        /**
+         * Check if the grant is in effect in a world.
+         */
+        public boolean appliesIn(String worldName) {
+            return world == null || world.equalsIgnoreCase(worldName);
+        }
+    }
+    
+    private static class Expiry {
+        private final UUID playerUUID;
+        private final long expirationTime;
+        private final TemporaryGrant entry;
+        
+        private Expiry(UUID playerUUID, long expirationTime, TemporaryGrant entry) {
+            this.playerUUID = playerUUID;
+            this.expirationTime = expirationTime;
+            this.entry = entry;
+        }
+    }
+    
+    /**
+     * A player's granted permissions for every world, worked out ahead of their join.
+     */
+    public static final class PreparedGrants {
+        private final List<TemporaryGrant> source;
+        private final Map<String, Map<String, Boolean>> byWorld;
+        private final Map<String, Boolean> elsewhere;
+        
+        private PreparedGrants(List<TemporaryGrant> source, Map<String, Map<String, Boolean>> byWorld,
+                               Map<String, Boolean> elsewhere) {
+            this.source = source;
+            this.byWorld = byWorld;
+            this.elsewhere = elsewhere;
+        }
+        
+        /**
+         * Get the granted permissions in a world.
+         */
+        public Map<String, Boolean> get(String world) {
+            Map<String, Boolean> permissions = byWorld.get(world.toLowerCase());
+            return permissions != null ? permissions : elsewhere;
+        }
+    }
+    
+    private static class GrantedPermissions {
+        private final String world;
+        private final Map<String, Boolean> permissions;
+        
+        private GrantedPermissions(String world, Map<String, Boolean> permissions) {
+            this.world = world;
+            this.permissions = permissions;
+        }
+    }
 }
 
 
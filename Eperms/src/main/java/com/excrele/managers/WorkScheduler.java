@@ -0,0 +1,181 @@
+package com.excrele.managers;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs queued main-thread jobs a few at a time, spending at most a fixed time budget
+ * per tick (work-budget-ms in config.yml) so mass recalculations don't cause lag spikes.
+ * Jobs are keyed: submitting a job for a key that is still queued replaces the queued
+ * job in place, so e.g. a player is refreshed once however many changes touched them.
+ * Safe to submit from any thread; jobs always run on the main thread.
+ */
+public class WorkScheduler {
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+    
+    private final JavaPlugin plugin;
+    private final long budgetNanos;
+    private final Map<Object, Job> queue = new LinkedHashMap<>();
+    private final List<Batch> batches = new ArrayList<>();
+    private BukkitTask task;
+    
+    public WorkScheduler(JavaPlugin plugin, double budgetMillis) {
+        this.plugin = plugin;
+        this.budgetNanos = Math.max(100_000L, (long) (budgetMillis * 1_000_000L));
+    }
+    
+    /**
+     * Queue a job, replacing any job still queued under the same key.
+     */
+    public void submit(Object key, Runnable job) {
+        submitAll(Collections.singletonMap(key, job), null, null);
+    }
+    
+    /**
+     * Queue several jobs as one batch. With a sender, progress and completion are
+     * reported to it through ProgressManager.
+     */
+    public void submitAll(Map<?, Runnable> jobs, CommandSender sender, String operation) {
+        submitAll(jobs, sender, operation, null);
+    }
+    
+    /**
+     * Queue several jobs as one batch and run a callback on the main thread once all of
+     * them ran (on the next tick if there are none). Not run if the jobs are cancelled.
+     */
+    public synchronized void submitAll(Map<?, Runnable> jobs, CommandSender sender, String operation,
+                                       Runnable onComplete) {
+        if (jobs.isEmpty() && onComplete == null) {
+            return;
+        }
+        Batch batch = null;
+        if (sender != null || onComplete != null) {
+            batch = new Batch(sender, operation, jobs.size(), onComplete);
+            batches.add(batch);
+        }
+        for (Map.Entry<?, Runnable> entry : jobs.entrySet()) {
+            Job queued = queue.get(entry.getKey());
+            if (queued == null) {
+                queued = new Job();
+                queue.put(entry.getKey(), queued);
+            }
+            queued.runnable = entry.getValue();
+            if (batch != null) {
+                queued.batches.add(batch);
+            }
+        }
+        if (task == null && plugin.isEnabled()) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+    
+    /**
+     * Get the number of queued jobs.
+     */
+    public synchronized int getPending() {
+        return queue.size();
+    }
+    
+    /**
+     * Drop every queued job, e.g. on disable.
+     */
+    public synchronized void cancelAll() {
+        queue.clear();
+        batches.clear();
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    private void tick() {
+        long start = System.nanoTime();
+        // Always make progress, even if a single job is over budget
+        do {
+            Job job;
+            synchronized (this) {
+                Iterator<Job> iterator = queue.values().iterator();
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                job = iterator.next();
+                iterator.remove();
+            }
+            try {
+                job.runnable.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Scheduled job failed: " + e.getMessage());
+            }
+            for (Batch batch : job.batches) {
+                batch.done++;
+            }
+        } while (System.nanoTime() - start < budgetNanos);
+        
+        List<Batch> finished;
+        synchronized (this) {
+            finished = reportProgress();
+            if (queue.isEmpty() && task != null) {
+                task.cancel();
+                task = null;
+            }
+        }
+        // Outside the lock, callbacks may queue more work
+        for (Batch batch : finished) {
+            try {
+                batch.onComplete.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Scheduled job callback failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    private List<Batch> reportProgress() {
+        List<Batch> finished = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Iterator<Batch> iterator = batches.iterator(); iterator.hasNext(); ) {
+            Batch batch = iterator.next();
+            if (batch.done >= batch.total) {
+                iterator.remove();
+                if (batch.sender != null) {
+                    ProgressManager.showComplete(batch.sender, batch.operation, batch.total);
+                }
+                if (batch.onComplete != null) {
+                    finished.add(batch);
+                }
+            } else if (batch.sender != null && now - batch.lastReport >= PROGRESS_INTERVAL_NANOS) {
+                batch.lastReport = now;
+                ProgressManager.showProgress(batch.sender, batch.operation, batch.done, batch.total);
+            }
+        }
+        return finished;
+    }
+    
+    private static class Job {
+        private Runnable runnable;
+        private final List<Batch> batches = new ArrayList<>(1);
+    }
+    
+    private static class Batch {
+        private final CommandSender sender;
+        private final String operation;
+        private final int total;
+        private final Runnable onComplete;
+        private int done;
+        private long lastReport = System.nanoTime();
+        
+        private Batch(CommandSender sender, String operation, int total, Runnable onComplete) {
+            this.sender = sender;
+            this.operation = operation;
+            this.total = total;
+            this.onComplete = onComplete;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.excrele.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable view of all ranks and player assignments at one point in time.
+ * A new snapshot is published for every mutation, so readers on any thread
+ * always see a consistent state without locking.
+ */
+public final class DataSnapshot {
+    private static final DataSnapshot EMPTY = new DataSnapshot(
+        Collections.<String, RankSnapshot>emptyMap(), PlayerTable.empty());
+    
+    private final Map<String, RankSnapshot> ranks;
+    private final PlayerTable players;
+    
+    public DataSnapshot(Map<String, RankSnapshot> ranks, PlayerTable players) {
+        this.ranks = ranks;
+        this.players = players;
+    }
+    
+    public static DataSnapshot empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Get a rank, or null if it doesn't exist.
+     */
+    public RankSnapshot getRank(String name) {
+        return name != null ? ranks.get(name) : null;
+    }
+    
+    /**
+     * Get all ranks by name (unmodifiable).
+     */
+    public Map<String, RankSnapshot> getRanks() {
+        return ranks;
+    }
+    
+    public PlayerTable getPlayers() {
+        return players;
+    }
+    
+    /**
+     * Get a player's rank, or "default" if the player has none.
+     */
+    public String getPlayerRank(UUID uuid) {
+        PlayerRecord record = players.get(uuid);
+        return record != null && record.getRank() != null ? record.getRank() : "default";
+    }
+    
+    /**
+     * Copy of this snapshot with different ranks.
+     */
+    public DataSnapshot withRanks(Map<String, RankSnapshot> ranks) {
+        return new DataSnapshot(ranks, players);
+    }
+    
+    /**
+     * Copy of this snapshot with different players.
+     */
+    public DataSnapshot withPlayers(PlayerTable players) {
+        return new DataSnapshot(ranks, players);
+    }
+}
@@ -0,0 +1,52 @@
+package com.excrele.model;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Size-bounded map that evicts the least recently used entry. Thread-safe.
+ */
+public final class LruCache<K, V> {
+    private final Map<K, V> entries;
+    
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+    
+    /**
+     * Get a value and mark it as recently used, or null if absent.
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+    
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+    
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Copy of the cached keys, without changing their order of use.
+     */
+    public synchronized Set<K> keys() {
+        return new HashSet<>(entries.keySet());
+    }
+}
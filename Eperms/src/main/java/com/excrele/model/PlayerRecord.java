@@ -0,0 +1,31 @@
+package com.excrele.model;
+
+import java.util.UUID;
+
+/**
+ * Immutable rank assignment of a player.
+ */
+public final class PlayerRecord {
+    private final UUID uuid;
+    private final String rank;
+    
+    public PlayerRecord(UUID uuid, String rank) {
+        this.uuid = uuid;
+        this.rank = rank;
+    }
+    
+    public UUID getUuid() {
+        return uuid;
+    }
+    
+    public String getRank() {
+        return rank;
+    }
+    
+    /**
+     * Copy of this record with a different rank.
+     */
+    public PlayerRecord withRank(String rank) {
+        return new PlayerRecord(uuid, rank);
+    }
+}
@@ -0,0 +1,122 @@
+package com.excrele.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable UUID to PlayerRecord map, split into fixed shards so a copy-on-write update
+ * only copies the shard it touches instead of every player on record.
+ */
+public final class PlayerTable {
+    private static final int SHARDS = 64;
+    private static final PlayerTable EMPTY = new PlayerTable(emptyShards(), 0);
+    
+    private final Map<UUID, PlayerRecord>[] shards;
+    private final int size;
+    
+    private PlayerTable(Map<UUID, PlayerRecord>[] shards, int size) {
+        this.shards = shards;
+        this.size = size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<UUID, PlayerRecord>[] emptyShards() {
+        Map<UUID, PlayerRecord>[] shards = new Map[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = Collections.emptyMap();
+        }
+        return shards;
+    }
+    
+    private static int shardOf(UUID uuid) {
+        return uuid.hashCode() & (SHARDS - 1);
+    }
+    
+    public static PlayerTable empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Build a table from a batch of records.
+     */
+    public static PlayerTable of(Collection<PlayerRecord> records) {
+        return EMPTY.withAll(records);
+    }
+    
+    /**
+     * Get a player's record, or null if the player has none.
+     */
+    public PlayerRecord get(UUID uuid) {
+        return shards[shardOf(uuid)].get(uuid);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Copy of this table with one record added or replaced.
+     */
+    public PlayerTable with(PlayerRecord record) {
+        return withAll(Collections.singletonList(record));
+    }
+    
+    /**
+     * Copy of this table with several records added or replaced; each touched shard is copied once.
+     */
+    public PlayerTable withAll(Collection<PlayerRecord> records) {
+        if (records.isEmpty()) {
+            return this;
+        }
+        Map<UUID, PlayerRecord>[] copy = shards.clone();
+        boolean[] copied = new boolean[SHARDS];
+        int newSize = size;
+        for (PlayerRecord record : records) {
+            int shard = shardOf(record.getUuid());
+            if (!copied[shard]) {
+                copy[shard] = new HashMap<>(copy[shard]);
+                copied[shard] = true;
+            }
+            if (copy[shard].put(record.getUuid(), record) == null) {
+                newSize++;
+            }
+        }
+        for (int i = 0; i < SHARDS; i++) {
+            if (copied[i]) {
+                copy[i] = Collections.unmodifiableMap(copy[i]);
+            }
+        }
+        return new PlayerTable(copy, newSize);
+    }
+    
+    /**
+     * Copy of this table without a player's record.
+     */
+    public PlayerTable without(UUID uuid) {
+        int shard = shardOf(uuid);
+        if (!shards[shard].containsKey(uuid)) {
+            return this;
+        }
+        Map<UUID, PlayerRecord>[] copy = shards.clone();
+        Map<UUID, PlayerRecord> updated = new HashMap<>(copy[shard]);
+        updated.remove(uuid);
+        copy[shard] = Collections.unmodifiableMap(updated);
+        return new PlayerTable(copy, size - 1);
+    }
+    
+    /**
+     * Get every record in the table.
+     */
+    public List<PlayerRecord> records() {
+        List<PlayerRecord> records = new ArrayList<>(size);
+        for (Map<UUID, PlayerRecord> shard : shards) {
+            records.addAll(shard.values());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,126 @@
+package com.excrele.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * What a reload of ranks.yml, tracks.yml or a player file changed compared to the
+ * data that was loaded: ranks and tracks added, removed or edited, and players
+ * whose assigned rank changed (mapped to null when their assignment was removed).
+ */
+public final class RankDiff {
+    private final Set<String> addedRanks = new LinkedHashSet<>();
+    private final Set<String> removedRanks = new LinkedHashSet<>();
+    private final Set<String> changedRanks = new LinkedHashSet<>();
+    private final Set<String> changedTracks = new LinkedHashSet<>();
+    private final Map<UUID, String> changedPlayers = new LinkedHashMap<>();
+    
+    /**
+     * A diff without any changes.
+     */
+    public static RankDiff empty() {
+        return new RankDiff();
+    }
+    
+    /**
+     * Compare two sets of rank definitions.
+     */
+    public static RankDiff ofRanks(Map<String, RankSnapshot> before, Map<String, RankSnapshot> after) {
+        RankDiff diff = new RankDiff();
+        for (Map.Entry<String, RankSnapshot> entry : after.entrySet()) {
+            RankSnapshot previous = before.get(entry.getKey());
+            if (previous == null) {
+                diff.addedRanks.add(entry.getKey());
+            } else if (!previous.equals(entry.getValue())) {
+                diff.changedRanks.add(entry.getKey());
+            }
+        }
+        for (String rank : before.keySet()) {
+            if (!after.containsKey(rank)) {
+                diff.removedRanks.add(rank);
+            }
+        }
+        return diff;
+    }
+    
+    /**
+     * Compare two sets of tracks and record the ones that differ.
+     */
+    public RankDiff withTracks(Map<String, ?> before, Map<String, ?> after) {
+        for (Map.Entry<String, ?> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                changedTracks.add(entry.getKey());
+            }
+        }
+        for (String track : before.keySet()) {
+            if (!after.containsKey(track)) {
+                changedTracks.add(track);
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Record changed player assignments.
+     */
+    public RankDiff withPlayers(Map<UUID, String> players) {
+        changedPlayers.putAll(players);
+        return this;
+    }
+    
+    /**
+     * Add everything another diff changed to this one.
+     */
+    public RankDiff merge(RankDiff other) {
+        addedRanks.addAll(other.addedRanks);
+        removedRanks.addAll(other.removedRanks);
+        changedRanks.addAll(other.changedRanks);
+        changedTracks.addAll(other.changedTracks);
+        changedPlayers.putAll(other.changedPlayers);
+        return this;
+    }
+    
+    public Set<String> getAddedRanks() {
+        return Collections.unmodifiableSet(addedRanks);
+    }
+    
+    public Set<String> getRemovedRanks() {
+        return Collections.unmodifiableSet(removedRanks);
+    }
+    
+    /**
+     * Get ranks whose prefix, suffix, priority, permissions or inheritance changed.
+     */
+    public Set<String> getChangedRanks() {
+        return Collections.unmodifiableSet(changedRanks);
+    }
+    
+    /**
+     * Get tracks that were added, removed or reordered.
+     */
+    public Set<String> getChangedTracks() {
+        return Collections.unmodifiableSet(changedTracks);
+    }
+    
+    /**
+     * Get players whose assigned rank changed, mapped to the new rank (null if removed).
+     */
+    public Map<UUID, String> getChangedPlayers() {
+        return Collections.unmodifiableMap(changedPlayers);
+    }
+    
+    /**
+     * Check whether any rank definitions changed.
+     */
+    public boolean hasRankChanges() {
+        return !addedRanks.isEmpty() || !removedRanks.isEmpty() || !changedRanks.isEmpty();
+    }
+    
+    public boolean isEmpty() {
+        return !hasRankChanges() && changedTracks.isEmpty() && changedPlayers.isEmpty();
+    }
+}
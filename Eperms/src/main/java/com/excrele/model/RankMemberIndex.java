@@ -0,0 +1,118 @@
+package com.excrele.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Reverse index of rank name to the players assigned to it in ranks.yml.
+ * Thread-safe; members of a rank are kept sorted so pages are stable between calls.
+ * Players without an explicit assignment (implicitly "default") are not indexed.
+ */
+public final class RankMemberIndex {
+    private final Map<String, NavigableSet<UUID>> members = new ConcurrentHashMap<>();
+    
+    /**
+     * Build an index from every player record.
+     */
+    public static RankMemberIndex of(PlayerTable players) {
+        RankMemberIndex index = new RankMemberIndex();
+        for (PlayerRecord record : players.records()) {
+            index.move(record.getUuid(), null, record.getRank());
+        }
+        return index;
+    }
+    
+    /**
+     * Build an index from stored player ranks.
+     */
+    public static RankMemberIndex of(Map<UUID, String> ranks) {
+        RankMemberIndex index = new RankMemberIndex();
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            index.move(entry.getKey(), null, entry.getValue());
+        }
+        return index;
+    }
+    
+    /**
+     * Get the rank a player is assigned to, or null if they have no assignment.
+     * Looks through every rank, so it costs one set lookup per rank.
+     */
+    public String getRank(UUID uuid) {
+        for (Map.Entry<String, NavigableSet<UUID>> entry : members.entrySet()) {
+            if (entry.getValue().contains(uuid)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Move a player from one rank to another. Either rank may be null.
+     */
+    public void move(UUID uuid, String fromRank, String toRank) {
+        if (fromRank != null) {
+            NavigableSet<UUID> from = members.get(fromRank);
+            if (from != null) {
+                from.remove(uuid);
+            }
+        }
+        if (toRank != null) {
+            members.computeIfAbsent(toRank, rank -> new ConcurrentSkipListSet<>()).add(uuid);
+        }
+    }
+    
+    /**
+     * Get every rank that has or had members.
+     */
+    public Set<String> getRanks() {
+        return Collections.unmodifiableSet(members.keySet());
+    }
+    
+    /**
+     * Get the number of players assigned to a rank.
+     */
+    public int count(String rank) {
+        NavigableSet<UUID> set = members.get(rank);
+        return set != null ? set.size() : 0;
+    }
+    
+    /**
+     * Get all players assigned to a rank (read-only live view).
+     */
+    public Set<UUID> getMembers(String rank) {
+        NavigableSet<UUID> set = members.get(rank);
+        return set != null ? Collections.unmodifiableSet(set) : Collections.<UUID>emptySet();
+    }
+    
+    /**
+     * Get one page of a rank's members.
+     *
+     * @param page     Zero-based page number
+     * @param pageSize Players per page
+     */
+    public List<UUID> getMembers(String rank, int page, int pageSize) {
+        List<UUID> result = new ArrayList<>();
+        NavigableSet<UUID> set = members.get(rank);
+        if (set == null || page < 0 || pageSize <= 0) {
+            return result;
+        }
+        long skip = (long) page * pageSize;
+        Iterator<UUID> iterator = set.iterator();
+        while (skip > 0 && iterator.hasNext()) {
+            iterator.next();
+            skip--;
+        }
+        while (result.size() < pageSize && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package com.excrele.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable copy of a rank definition from ranks.yml.
+ */
+public final class RankSnapshot {
+    private final String name;
+    private final String prefix;
+    private final String suffix;
+    private final int priority;
+    private final List<String> permissions;
+    private final List<String> inheritance;
+    
+    public RankSnapshot(String name, String prefix, String suffix, int priority,
+                        List<String> permissions, List<String> inheritance) {
+        this.name = name;
+        this.prefix = prefix != null ? prefix : "";
+        this.suffix = suffix != null ? suffix : "";
+        this.priority = priority;
+        this.permissions = Collections.unmodifiableList(new ArrayList<>(permissions));
+        this.inheritance = Collections.unmodifiableList(new ArrayList<>(inheritance));
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Get the raw prefix (color codes not translated).
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+    
+    /**
+     * Get the raw suffix (color codes not translated).
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    /**
+     * Get the permissions declared directly on this rank.
+     */
+    public List<String> getPermissions() {
+        return permissions;
+    }
+    
+    /**
+     * Get the ranks this rank inherits from, in declared order.
+     */
+    public List<String> getInheritance() {
+        return inheritance;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RankSnapshot)) {
+            return false;
+        }
+        RankSnapshot other = (RankSnapshot) o;
+        return priority == other.priority && name.equals(other.name) && prefix.equals(other.prefix)
+            && suffix.equals(other.suffix) && permissions.equals(other.permissions)
+            && inheritance.equals(other.inheritance);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, prefix, suffix, priority, permissions, inheritance);
+    }
+}
@@ -0,0 +1,107 @@
+package com.excrele.permissions;
+
+import org.bukkit.permissions.PermissionAttachment;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a permission map to a PermissionAttachment with a single recalculation.
+ * Bukkit recalculates the whole permissible on every setPermission/unsetPermission call,
+ * so instead the attachment's backing map is edited directly and the permissible is
+ * recalculated once. Only the delta against the attachment's current contents is written.
+ * If the backing map can't be reached, falls back to the per-node API for the delta only.
+ */
+public final class AttachmentApplier {
+    private static final Field PERMISSIONS_FIELD = findPermissionsField();
+    
+    private AttachmentApplier() {
+    }
+    
+    private static Field findPermissionsField() {
+        try {
+            Field field = PermissionAttachment.class.getDeclaredField("permissions");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Make the attachment hold exactly the target nodes.
+     *
+     * @return the number of nodes that were added, changed or removed
+     */
+    public static int apply(PermissionAttachment attachment, Map<String, Boolean> target) {
+        Map<String, Boolean> backing = getBackingMap(attachment);
+        if (backing == null) {
+            return applyPerNode(attachment, target);
+        }
+        
+        int changes = 0;
+        Iterator<Map.Entry<String, Boolean>> iterator = backing.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!target.containsKey(iterator.next().getKey())) {
+                iterator.remove();
+                changes++;
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : target.entrySet()) {
+            Boolean previous = backing.put(entry.getKey(), entry.getValue());
+            if (!entry.getValue().equals(previous)) {
+                changes++;
+            }
+        }
+        
+        if (changes > 0) {
+            attachment.getPermissible().recalculatePermissions();
+        }
+        return changes;
+    }
+    
+    /**
+     * Check if attachments can be filled in bulk on this server.
+     */
+    public static boolean isBatchingSupported() {
+        return PERMISSIONS_FIELD != null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Boolean> getBackingMap(PermissionAttachment attachment) {
+        if (PERMISSIONS_FIELD == null) {
+            return null;
+        }
+        try {
+            return (Map<String, Boolean>) PERMISSIONS_FIELD.get(attachment);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    private static int applyPerNode(PermissionAttachment attachment, Map<String, Boolean> target) {
+        Map<String, Boolean> current = attachment.getPermissions();
+        List<String> removed = new ArrayList<>();
+        for (String node : current.keySet()) {
+            if (!target.containsKey(node)) {
+                removed.add(node);
+            }
+        }
+        
+        int changes = 0;
+        for (String node : removed) {
+            attachment.unsetPermission(node);
+            changes++;
+        }
+        for (Map.Entry<String, Boolean> entry : target.entrySet()) {
+            if (!entry.getValue().equals(current.get(entry.getKey()))) {
+                attachment.setPermission(entry.getKey(), entry.getValue());
+                changes++;
+            }
+        }
+        return changes;
+    }
+}
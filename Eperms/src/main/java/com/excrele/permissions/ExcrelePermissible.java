@@ -0,0 +1,101 @@
+package com.excrele.permissions;
+
+import com.excrele.managers.RankManager;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissibleBase;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Permissible injected in place of Bukkit's PermissibleBase when inject-permissible is enabled.
+ * Checks are answered from the player's rank trie in the current RankGraph (exact nodes
+ * and wildcards) at the precedence of the rank's attachment: a node that another plugin's
+ * attachment sets wins over the rank, as it would without injection. Anything the rank
+ * doesn't cover falls through to the normal Bukkit resolution.
+ */
+public class ExcrelePermissible extends PermissibleBase {
+    private final RankManager rankManager;
+    private final PermissibleBase previous;
+    private volatile String rank;
+    private volatile Set<String> foreignNodes = Collections.emptySet(); // set by other plugins' attachments
+    
+    public ExcrelePermissible(Player player, RankManager rankManager, PermissibleBase previous) {
+        super(player);
+        this.rankManager = rankManager;
+        this.previous = previous;
+    }
+    
+    /**
+     * Get the permissible that was replaced, restored when the player is uninjected.
+     */
+    public PermissibleBase getPrevious() {
+        return previous;
+    }
+    
+    /**
+     * Set the rank whose trie answers permission checks.
+     */
+    public void setRank(String rank) {
+        this.rank = rank;
+    }
+    
+    private int resolve(String name) {
+        String current = rank;
+        if (name == null || current == null || foreignNodes.contains(name.toLowerCase(Locale.ROOT))) {
+            return PermissionTrie.UNDEFINED;
+        }
+        return rankManager.getRankGraph().getPermissionTrie(current).resolve(name);
+    }
+    
+    @Override
+    public void recalculatePermissions() {
+        super.recalculatePermissions();
+        // Bukkit calls this whenever an attachment changes, and from the super constructor
+        Plugin owner = JavaPlugin.getProvidingPlugin(ExcrelePermissible.class);
+        Set<String> nodes = new HashSet<>();
+        for (PermissionAttachmentInfo info : getEffectivePermissions()) {
+            PermissionAttachment attachment = info.getAttachment();
+            if (attachment != null && attachment.getPlugin() != owner) {
+                nodes.add(info.getPermission());
+            }
+        }
+        foreignNodes = nodes;
+    }
+    
+    @Override
+    public boolean hasPermission(String name) {
+        int result = resolve(name);
+        if (result != PermissionTrie.UNDEFINED) {
+            return result == PermissionTrie.ALLOW;
+        }
+        return super.hasPermission(name);
+    }
+    
+    @Override
+    public boolean hasPermission(Permission perm) {
+        int result = resolve(perm != null ? perm.getName() : null);
+        if (result != PermissionTrie.UNDEFINED) {
+            return result == PermissionTrie.ALLOW;
+        }
+        return super.hasPermission(perm);
+    }
+    
+    @Override
+    public boolean isPermissionSet(String name) {
+        return resolve(name) != PermissionTrie.UNDEFINED || super.isPermissionSet(name);
+    }
+    
+    @Override
+    public boolean isPermissionSet(Permission perm) {
+        return resolve(perm != null ? perm.getName() : null) != PermissionTrie.UNDEFINED
+            || super.isPermissionSet(perm);
+    }
+}
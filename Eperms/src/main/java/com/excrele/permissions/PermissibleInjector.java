@@ -0,0 +1,107 @@
+package com.excrele.permissions;
+
+import com.excrele.managers.RankManager;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permissible;
+import org.bukkit.permissions.PermissibleBase;
+import org.bukkit.permissions.PermissionAttachment;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Swaps a player's PermissibleBase for an ExcrelePermissible and back, via reflection on
+ * CraftHumanEntity's "perm" field. Attachments already on the old permissible are moved
+ * across so other plugins don't lose them.
+ */
+public final class PermissibleInjector {
+    private PermissibleInjector() {
+    }
+    
+    /**
+     * Inject an ExcrelePermissible into a player, or return the one already injected.
+     *
+     * @return the injected permissible, or null if injection isn't possible on this server
+     */
+    public static ExcrelePermissible inject(Player player, RankManager rankManager, Logger logger) {
+        try {
+            Field permField = findPermField(player.getClass());
+            if (permField == null) {
+                logger.warning("Could not find the permissible field on " + player.getClass().getName()
+                    + ", inject-permissible is unavailable");
+                return null;
+            }
+            PermissibleBase current = (PermissibleBase) permField.get(player);
+            if (current instanceof ExcrelePermissible) {
+                return (ExcrelePermissible) current;
+            }
+            
+            ExcrelePermissible injected = new ExcrelePermissible(player, rankManager, current);
+            moveAttachments(current, injected);
+            permField.set(player, injected);
+            injected.recalculatePermissions();
+            return injected;
+        } catch (Exception e) {
+            logger.warning("Failed to inject permissible for " + player.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Restore the original permissible of a player, keeping any attachments.
+     */
+    public static void uninject(Player player, Logger logger) {
+        try {
+            Field permField = findPermField(player.getClass());
+            if (permField == null) {
+                return;
+            }
+            Object current = permField.get(player);
+            if (!(current instanceof ExcrelePermissible)) {
+                return;
+            }
+            
+            ExcrelePermissible injected = (ExcrelePermissible) current;
+            PermissibleBase previous = injected.getPrevious();
+            moveAttachments(injected, previous);
+            permField.set(player, previous);
+            previous.recalculatePermissions();
+        } catch (Exception e) {
+            logger.warning("Failed to restore permissible for " + player.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private static Field findPermField(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField("perm");
+                if (PermissibleBase.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            } catch (NoSuchFieldException ignored) {
+                // Keep walking up
+            }
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void moveAttachments(PermissibleBase from, PermissibleBase to) throws ReflectiveOperationException {
+        Field attachmentsField = PermissibleBase.class.getDeclaredField("attachments");
+        attachmentsField.setAccessible(true);
+        List<PermissionAttachment> source = (List<PermissionAttachment>) attachmentsField.get(from);
+        List<PermissionAttachment> target = (List<PermissionAttachment>) attachmentsField.get(to);
+        
+        Field ownerField = PermissionAttachment.class.getDeclaredField("permissible");
+        ownerField.setAccessible(true);
+        for (PermissionAttachment attachment : new ArrayList<>(source)) {
+            // Attachments recalculate their owner on change, so point them at the new one
+            ownerField.set(attachment, (Permissible) to);
+            target.add(attachment);
+        }
+        source.clear();
+    }
+}
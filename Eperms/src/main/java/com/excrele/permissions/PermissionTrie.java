@@ -0,0 +1,118 @@
+package com.excrele.permissions;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable prefix trie over permission nodes, compiled once per rank.
+ * Supports exact nodes plus "*" and "node.*" wildcards; the most specific match wins
+ * (an exact node beats any wildcard, a deeper wildcard beats a shallower one).
+ * Lookups walk the query one character at a time and lower-case as they go,
+ * so resolving a node allocates nothing.
+ */
+public final class PermissionTrie {
+    public static final int UNDEFINED = 0;
+    public static final int ALLOW = 1;
+    public static final int DENY = 2;
+    
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final PermissionTrie EMPTY = new PermissionTrie(new Node());
+    
+    private final Node root;
+    
+    private PermissionTrie(Node root) {
+        this.root = root;
+    }
+    
+    /**
+     * Trie that defines nothing.
+     */
+    public static PermissionTrie empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Compile a trie from lower-cased nodes (node to value).
+     */
+    public static PermissionTrie compile(Map<String, Boolean> permissions) {
+        if (permissions.isEmpty()) {
+            return EMPTY;
+        }
+        Node root = new Node();
+        for (Map.Entry<String, Boolean> entry : permissions.entrySet()) {
+            String node = entry.getKey();
+            byte value = entry.getValue() ? (byte) ALLOW : (byte) DENY;
+            if (node.equals("*")) {
+                root.wildcard = value;
+            } else if (node.endsWith(".*")) {
+                walk(root, node, node.length() - 1).wildcard = value;
+            } else {
+                walk(root, node, node.length()).value = value;
+            }
+        }
+        return new PermissionTrie(root);
+    }
+    
+    private static Node walk(Node node, String path, int length) {
+        for (int i = 0; i < length; i++) {
+            node = node.getOrCreate(path.charAt(i));
+        }
+        return node;
+    }
+    
+    /**
+     * Resolve a permission node case-insensitively.
+     *
+     * @return ALLOW, DENY or UNDEFINED if neither a node nor a wildcard covers it
+     */
+    public int resolve(String permission) {
+        Node node = root;
+        int result = node.wildcard;
+        int length = permission.length();
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(permission.charAt(i));
+            node = node.get(c);
+            if (node == null) {
+                return result;
+            }
+            if (c == '.' && node.wildcard != UNDEFINED) {
+                result = node.wildcard;
+            }
+        }
+        return node.value != UNDEFINED ? node.value : result;
+    }
+    
+    private static final class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private byte value;
+        private byte wildcard;
+        
+        private Node get(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+        
+        private Node getOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            // Keep keys sorted so lookups can binary search
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            Node child = new Node();
+            newKeys[insert] = key;
+            newChildren[insert] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
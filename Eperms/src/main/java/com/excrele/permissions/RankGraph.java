@@ -0,0 +1,246 @@
+package com.excrele.permissions;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Compiled, immutable view of the rank hierarchy defined in ranks.yml.
+ * Inheritance is flattened once when the graph is built, so resolving a rank's
+ * effective permissions is a single map lookup.
+ *
+ * Resolution order for a rank is its inheritance linearization: a depth-first walk
+ * of the "inheritance" list in declared order, visiting every ancestor exactly once
+ * (diamonds are deduplicated) and emitting parents before children. Nodes are applied
+ * in that order, so a rank always overrides what it inherits and a later parent
+ * overrides an earlier one. A node prefixed with "-" is a negation and resolves to false.
+ */
+public final class RankGraph {
+    private static final RankGraph EMPTY = new RankGraph(
+        Collections.<String, List<String>>emptyMap(),
+        Collections.<String, Set<String>>emptyMap(),
+        Collections.<String>emptyList(),
+        Collections.<String, List<String>>emptyMap(),
+        Collections.<String, Map<String, Boolean>>emptyMap(),
+        Collections.<String, PermissionTrie>emptyMap());
+    
+    private final Map<String, List<String>> parents;
+    private final Map<String, Set<String>> children;
+    private final List<String> topologicalOrder;
+    private final Map<String, List<String>> linearizations;
+    private final Map<String, Map<String, Boolean>> effectivePermissions;
+    private final Map<String, PermissionTrie> permissionTries;
+    
+    private RankGraph(Map<String, List<String>> parents, Map<String, Set<String>> children,
+                      List<String> topologicalOrder, Map<String, List<String>> linearizations,
+                      Map<String, Map<String, Boolean>> effectivePermissions,
+                      Map<String, PermissionTrie> permissionTries) {
+        this.parents = parents;
+        this.children = children;
+        this.topologicalOrder = topologicalOrder;
+        this.linearizations = linearizations;
+        this.effectivePermissions = effectivePermissions;
+        this.permissionTries = permissionTries;
+    }
+    
+    /**
+     * Graph with no ranks, used before ranks.yml has been loaded.
+     */
+    public static RankGraph empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Build a graph from the "ranks" section of ranks.yml.
+     * Unknown parents and inheritance cycles are reported to the logger and skipped.
+     */
+    public static RankGraph build(ConfigurationSection ranksSection, Logger logger) {
+        if (ranksSection == null) {
+            return EMPTY;
+        }
+        
+        Map<String, List<String>> declaredNodes = new LinkedHashMap<>();
+        Map<String, List<String>> parents = new LinkedHashMap<>();
+        for (String rank : ranksSection.getKeys(false)) {
+            declaredNodes.put(rank, ranksSection.getStringList(rank + ".permissions"));
+            parents.put(rank, new ArrayList<>());
+        }
+        
+        Map<String, Set<String>> children = new HashMap<>();
+        for (String rank : parents.keySet()) {
+            children.put(rank, new LinkedHashSet<>());
+        }
+        for (String rank : parents.keySet()) {
+            for (String parent : ranksSection.getStringList(rank + ".inheritance")) {
+                if (!parents.containsKey(parent)) {
+                    logger.warning("Rank '" + rank + "' inherits from unknown rank '" + parent + "', ignoring");
+                    continue;
+                }
+                List<String> rankParents = parents.get(rank);
+                if (!rankParents.contains(parent)) {
+                    rankParents.add(parent);
+                    children.get(parent).add(rank);
+                }
+            }
+        }
+        
+        // Global order: every rank appears after all of its ancestors
+        List<String> topologicalOrder = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String rank : parents.keySet()) {
+            visit(rank, parents, visited, new HashSet<String>(), topologicalOrder, logger);
+        }
+        
+        Map<String, List<String>> linearizations = new HashMap<>();
+        Map<String, Map<String, Boolean>> effectivePermissions = new HashMap<>();
+        Map<String, PermissionTrie> permissionTries = new HashMap<>();
+        for (String rank : topologicalOrder) {
+            List<String> linearization = new ArrayList<>();
+            visit(rank, parents, new HashSet<String>(), new HashSet<String>(), linearization, null);
+            
+            Map<String, Boolean> effective = new LinkedHashMap<>();
+            for (String source : linearization) {
+                for (String node : declaredNodes.get(source)) {
+                    applyNode(effective, node);
+                }
+            }
+            
+            linearizations.put(rank, Collections.unmodifiableList(linearization));
+            effectivePermissions.put(rank, Collections.unmodifiableMap(effective));
+            permissionTries.put(rank, PermissionTrie.compile(effective));
+        }
+        
+        Map<String, List<String>> frozenParents = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : parents.entrySet()) {
+            frozenParents.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        Map<String, Set<String>> frozenChildren = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : children.entrySet()) {
+            frozenChildren.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        
+        return new RankGraph(frozenParents, frozenChildren, Collections.unmodifiableList(topologicalOrder),
+            linearizations, effectivePermissions, permissionTries);
+    }
+    
+    /**
+     * Depth-first post-order walk over inheritance edges. Edges that close a cycle are
+     * skipped (and reported if a logger is given).
+     */
+    private static void visit(String rank, Map<String, List<String>> parents, Set<String> visited,
+                              Set<String> onStack, List<String> out, Logger logger) {
+        if (visited.contains(rank)) {
+            return;
+        }
+        onStack.add(rank);
+        for (String parent : parents.get(rank)) {
+            if (onStack.contains(parent)) {
+                if (logger != null) {
+                    logger.warning("Inheritance cycle detected between '" + rank + "' and '" + parent + "', ignoring edge");
+                }
+                continue;
+            }
+            visit(parent, parents, visited, onStack, out, logger);
+        }
+        onStack.remove(rank);
+        visited.add(rank);
+        out.add(rank);
+    }
+    
+    private static void applyNode(Map<String, Boolean> effective, String node) {
+        if (node == null) {
+            return;
+        }
+        node = node.trim();
+        boolean value = true;
+        if (node.startsWith("-")) {
+            value = false;
+            node = node.substring(1);
+        }
+        if (node.isEmpty()) {
+            return;
+        }
+        // Interned so ranks sharing a node also share the key
+        String key = node.toLowerCase(Locale.ROOT).intern();
+        // Re-insert so iteration order reflects the node that won
+        effective.remove(key);
+        effective.put(key, value);
+    }
+    
+    /**
+     * Check if the graph contains a rank.
+     */
+    public boolean hasRank(String rank) {
+        return parents.containsKey(rank);
+    }
+    
+    /**
+     * Get the flattened permissions of a rank (node to value), or an empty map for unknown ranks.
+     */
+    public Map<String, Boolean> getEffectivePermissions(String rank) {
+        Map<String, Boolean> effective = effectivePermissions.get(rank);
+        return effective != null ? effective : Collections.<String, Boolean>emptyMap();
+    }
+    
+    /**
+     * Get the compiled lookup trie for a rank's effective permissions.
+     */
+    public PermissionTrie getPermissionTrie(String rank) {
+        PermissionTrie trie = permissionTries.get(rank);
+        return trie != null ? trie : PermissionTrie.empty();
+    }
+    
+    /**
+     * Get the ranks whose nodes make up a rank, in resolution order (the rank itself is last).
+     */
+    public List<String> getLinearization(String rank) {
+        List<String> linearization = linearizations.get(rank);
+        return linearization != null ? linearization : Collections.<String>emptyList();
+    }
+    
+    /**
+     * Get the known direct parents of a rank in declared order.
+     */
+    public List<String> getParents(String rank) {
+        List<String> rankParents = parents.get(rank);
+        return rankParents != null ? rankParents : Collections.<String>emptyList();
+    }
+    
+    /**
+     * Get every rank that inherits from the given rank, directly or transitively.
+     */
+    public Set<String> getDescendants(String rank) {
+        Set<String> descendants = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>();
+        pending.add(rank);
+        while (!pending.isEmpty()) {
+            Set<String> direct = children.get(pending.remove(pending.size() - 1));
+            if (direct == null) {
+                continue;
+            }
+            for (String child : direct) {
+                if (descendants.add(child)) {
+                    pending.add(child);
+                }
+            }
+        }
+        return descendants;
+    }
+    
+    /**
+     * Get all ranks ordered so that every rank comes after the ranks it inherits from.
+     */
+    public List<String> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+}
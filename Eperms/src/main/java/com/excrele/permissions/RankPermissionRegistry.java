@@ -0,0 +1,106 @@
+package com.excrele.permissions;
+
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registers one synthetic Bukkit permission per rank (excreleperms.rank.&lt;name&gt;, see
+ * {@link #getRankNode}) whose children are the rank's flattened effective nodes. Players
+ * only carry that single node on their attachment, so every player in a rank shares the same children map and a rank
+ * edit only has to update the shared permission and recalculate that rank's members.
+ */
+public class RankPermissionRegistry {
+    public static final String NODE_PREFIX = "excreleperms.rank.";
+    
+    private final PluginManager pluginManager;
+    private final Set<String> registered = new HashSet<>();
+    
+    public RankPermissionRegistry(PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+    
+    /**
+     * Get the synthetic permission node for a rank.
+     *
+     * Rank names are case-sensitive but Bukkit permission names are not, so each
+     * upper-case letter is written as '^' plus the letter ('^' itself as "^^"). That keeps
+     * e.g. VIP and vip on separate nodes, and all-lower-case names unchanged.
+     */
+    public static String getRankNode(String rank) {
+        StringBuilder node = new StringBuilder(NODE_PREFIX.length() + rank.length() + 4).append(NODE_PREFIX);
+        for (int i = 0; i < rank.length(); i++) {
+            char c = rank.charAt(i);
+            if (c == '^') {
+                node.append("^^");
+            } else if (Character.isUpperCase(c)) {
+                node.append('^').append(Character.toLowerCase(c));
+            } else {
+                node.append(c);
+            }
+        }
+        return node.toString();
+    }
+    
+    /**
+     * Bring the registered rank permissions in line with a graph.
+     * Holders of changed ranks are not recalculated here; the caller schedules that.
+     *
+     * @return the ranks whose effective nodes changed
+     */
+    public synchronized Set<String> sync(RankGraph graph) {
+        Set<String> changed = new LinkedHashSet<>();
+        Set<String> current = new HashSet<>();
+        for (String rank : graph.getTopologicalOrder()) {
+            String node = getRankNode(rank);
+            current.add(node);
+            Map<String, Boolean> effective = graph.getEffectivePermissions(rank);
+            
+            Permission permission = pluginManager.getPermission(node);
+            if (permission == null) {
+                permission = new Permission(node, "Effective permissions of rank " + rank,
+                    PermissionDefault.FALSE, new LinkedHashMap<>(effective));
+                pluginManager.addPermission(permission);
+                changed.add(rank);
+            } else if (!permission.getChildren().equals(effective)) {
+                permission.getChildren().clear();
+                permission.getChildren().putAll(effective);
+                changed.add(rank);
+            }
+            registered.add(node);
+        }
+        
+        for (String node : new HashSet<>(registered)) {
+            if (!current.contains(node)) {
+                unregister(node);
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Remove every rank permission registered by this plugin.
+     */
+    public synchronized void unregisterAll() {
+        for (String node : new HashSet<>(registered)) {
+            unregister(node);
+        }
+    }
+    
+    private void unregister(String node) {
+        Permission permission = pluginManager.getPermission(node);
+        if (permission != null) {
+            // Strip the children first so anyone still holding the node loses them
+            permission.getChildren().clear();
+            permission.recalculatePermissibles();
+            pluginManager.removePermission(permission);
+        }
+        registered.remove(node);
+    }
+}
@@ -0,0 +1,675 @@
+package com.excrele.storage;
+
+import com.excrele.managers.TemporaryRankManager.TemporaryGrant;
+import com.excrele.managers.TemporaryRankManager.TemporaryRankInfo;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Embedded SQLite storage backend (data/storage.db), using the driver bundled with the server.
+ *
+ * One dedicated thread owns the write connection. Writes are queued and applied in
+ * batches: consecutive writes with the same statement share one prepared batch, and each
+ * drain runs in a single transaction. If a batch fails it is rolled back and written one
+ * statement at a time; a write that fails on its own for too long is logged and dropped,
+ * and the rest are retried in order. The backlog is capped.
+ *
+ * Reads use a second, read-only connection on its own thread (the database runs in WAL
+ * mode), so they never queue behind a write batch. Player ranks that are queued but not
+ * written yet are answered from memory, as are balances. History is read on the write
+ * thread, after earlier writes, and returned as a future.
+ */
+public class SqliteStorageBackend implements StorageBackend {
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS player_ranks (uuid TEXT PRIMARY KEY, rank TEXT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_player_ranks_rank ON player_ranks (rank)",
+        "CREATE TABLE IF NOT EXISTS rank_history (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid TEXT NOT NULL, entry TEXT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_rank_history_uuid ON rank_history (uuid, id)",
+        "CREATE TABLE IF NOT EXISTS temporary_ranks (uuid TEXT PRIMARY KEY, rank TEXT NOT NULL, original_rank TEXT NOT NULL, expiration INTEGER NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS temporary_grants (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid TEXT NOT NULL, kind TEXT NOT NULL, node TEXT NOT NULL, value INTEGER NOT NULL, world TEXT, expiration INTEGER NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_temporary_grants_uuid ON temporary_grants (uuid, id)",
+        "CREATE TABLE IF NOT EXISTS world_ranks (uuid TEXT NOT NULL, world TEXT NOT NULL, rank TEXT NOT NULL, PRIMARY KEY (uuid, world))",
+        "CREATE TABLE IF NOT EXISTS balances (uuid TEXT PRIMARY KEY, balance REAL NOT NULL)"
+    };
+    private static final String UPSERT_RANK = "INSERT OR REPLACE INTO player_ranks (uuid, rank) VALUES (?, ?)";
+    private static final String INSERT_HISTORY = "INSERT INTO rank_history (uuid, entry) VALUES (?, ?)";
+    private static final String TRIM_HISTORY = "DELETE FROM rank_history WHERE uuid = ? AND id NOT IN "
+        + "(SELECT id FROM rank_history WHERE uuid = ? ORDER BY id DESC LIMIT ?)";
+    private static final String DELETE_HISTORY = "DELETE FROM rank_history WHERE uuid = ?";
+    private static final String UPSERT_TEMPORARY = "INSERT OR REPLACE INTO temporary_ranks (uuid, rank, original_rank, expiration) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_TEMPORARY = "DELETE FROM temporary_ranks WHERE uuid = ?";
+    private static final String INSERT_GRANT = "INSERT INTO temporary_grants (uuid, kind, node, value, world, expiration) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_GRANTS = "DELETE FROM temporary_grants WHERE uuid = ?";
+    private static final String UPSERT_WORLD = "INSERT OR REPLACE INTO world_ranks (uuid, world, rank) VALUES (?, ?, ?)";
+    private static final String DELETE_WORLD = "DELETE FROM world_ranks WHERE uuid = ? AND world = ?";
+    private static final String UPSERT_BALANCE = "INSERT OR REPLACE INTO balances (uuid, balance) VALUES (?, ?)";
+    private static final long RETRY_SECONDS = 5;
+    // A write that keeps failing on its own for this long is dropped
+    private static final long GIVE_UP_MILLIS = 60_000L;
+    private static final int MAX_BACKLOG = 10_000;
+    private static final int LOOKUP_CHUNK = 500;
+    
+    private final JavaPlugin plugin;
+    private final File databaseFile;
+    private final StorageBackend importSource;
+    private final ScheduledExecutorService connectionThread;
+    private final ExecutorService readerThread;
+    private final Queue<Write> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Map<UUID, Double> balances = new ConcurrentHashMap<>();
+    private final Map<UUID, String> pendingRanks = new ConcurrentHashMap<>(); // queued, not written yet
+    private volatile boolean failing;
+    
+    // Only touched from the connection thread
+    private Connection connection;
+    private final List<Write> unwritten = new ArrayList<>();
+    
+    // Only touched from the reader thread
+    private Connection readConnection;
+    
+    /**
+     * @param importSource backend to copy player data from when the database is new, or null
+     */
+    public SqliteStorageBackend(JavaPlugin plugin, StorageBackend importSource) {
+        this.plugin = plugin;
+        this.databaseFile = new File(plugin.getDataFolder(), "data/storage.db");
+        this.importSource = importSource;
+        this.connectionThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ExcrelePerms-SQL");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.readerThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ExcrelePerms-SQL-Read");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+    
+    @Override
+    public boolean init() {
+        boolean created = !databaseFile.exists();
+        String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+        Boolean opened = submit(connectionThread, () -> {
+            Class.forName("org.sqlite.JDBC");
+            databaseFile.getParentFile().mkdirs();
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            return true;
+        }, false).join();
+        // Opened after the schema exists
+        Boolean readable = opened && query(() -> {
+            readConnection = DriverManager.getConnection(url);
+            try (Statement statement = readConnection.createStatement()) {
+                statement.execute("PRAGMA query_only=1");
+            }
+            return true;
+        }, false);
+        if (!readable) {
+            close();
+            return false;
+        }
+        if (created && importSource != null) {
+            importFrom(importSource);
+        } else {
+            balances.putAll(query(() -> {
+                Map<UUID, Double> stored = new HashMap<>();
+                try (Statement statement = readConnection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT uuid, balance FROM balances")) {
+                    while (result.next()) {
+                        stored.put(UUID.fromString(result.getString(1)), result.getDouble(2));
+                    }
+                }
+                return stored;
+            }, Collections.emptyMap()));
+        }
+        return true;
+    }
+    
+    /**
+     * Copy player ranks, temporary ranks and grants, world ranks and balances from another backend.
+     */
+    private void importFrom(StorageBackend source) {
+        Map<UUID, String> ranks = source.loadPlayerRanks();
+        setPlayerRanks(ranks);
+        for (Map.Entry<UUID, TemporaryRankInfo> entry : source.loadTemporaryRanks().entrySet()) {
+            saveTemporaryRank(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<UUID, List<TemporaryGrant>> entry : source.loadTemporaryGrants().entrySet()) {
+            saveTemporaryGrants(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<UUID, Map<String, String>> entry : source.loadWorldRanks().entrySet()) {
+            for (Map.Entry<String, String> world : entry.getValue().entrySet()) {
+                setWorldRank(entry.getKey(), world.getKey(), world.getValue());
+            }
+        }
+        for (Map.Entry<UUID, Double> entry : source.loadBalances().entrySet()) {
+            setBalance(entry.getKey(), entry.getValue());
+        }
+        flush();
+        plugin.getLogger().info("Imported " + ranks.size() + " players from " + source.getName() + " storage");
+    }
+    
+    @Override
+    public Map<UUID, String> loadPlayerRanks() {
+        Map<UUID, String> ranks = query(() -> {
+            Map<UUID, String> stored = new LinkedHashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, rank FROM player_ranks")) {
+                while (result.next()) {
+                    stored.put(UUID.fromString(result.getString(1)), result.getString(2));
+                }
+            }
+            return stored;
+        }, new LinkedHashMap<>());
+        ranks.putAll(pendingRanks);
+        return ranks;
+    }
+    
+    @Override
+    public String loadPlayerRank(UUID uuid) {
+        String pending = pendingRanks.get(uuid);
+        if (pending != null) {
+            return pending;
+        }
+        return query(() -> {
+            try (PreparedStatement statement = readConnection.prepareStatement("SELECT rank FROM player_ranks WHERE uuid = ?")) {
+                statement.setString(1, uuid.toString());
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? result.getString(1) : null;
+                }
+            }
+        }, null);
+    }
+    
+    @Override
+    public Map<UUID, String> loadPlayerRanks(Collection<UUID> uuids) {
+        List<UUID> stored = new ArrayList<>();
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        for (UUID uuid : uuids) {
+            String pending = pendingRanks.get(uuid);
+            if (pending != null) {
+                ranks.put(uuid, pending);
+            } else {
+                stored.add(uuid);
+            }
+        }
+        for (int start = 0; start < stored.size(); start += LOOKUP_CHUNK) {
+            List<UUID> chunk = stored.subList(start, Math.min(stored.size(), start + LOOKUP_CHUNK));
+            ranks.putAll(query(() -> {
+                StringBuilder sql = new StringBuilder("SELECT uuid, rank FROM player_ranks WHERE uuid IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                Map<UUID, String> found = new HashMap<>();
+                try (PreparedStatement statement = readConnection.prepareStatement(sql.append(")").toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setString(i + 1, chunk.get(i).toString());
+                    }
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            found.put(UUID.fromString(result.getString(1)), result.getString(2));
+                        }
+                    }
+                }
+                return found;
+            }, Collections.emptyMap()));
+        }
+        return ranks;
+    }
+    
+    @Override
+    public boolean setPlayerRanks(Map<UUID, String> ranks) {
+        if (connectionThread.isShutdown()) {
+            return false;
+        }
+        // Failures after this point are retried by the drain
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            pendingRanks.put(entry.getKey(), entry.getValue());
+            write(UPSERT_RANK, entry.getKey().toString(), entry.getValue());
+        }
+        return true;
+    }
+    
+    @Override
+    public int countRankMembers(String rank) {
+        return queryRanks(db -> {
+            try (PreparedStatement statement = db.prepareStatement("SELECT COUNT(*) FROM player_ranks WHERE rank = ?")) {
+                statement.setString(1, rank);
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? result.getInt(1) : 0;
+                }
+            }
+        }, 0);
+    }
+    
+    @Override
+    public List<UUID> getRankMembers(String rank, int offset, int limit) {
+        return queryRanks(db -> {
+            List<UUID> members = new ArrayList<>();
+            try (PreparedStatement statement = db.prepareStatement(
+                    "SELECT uuid FROM player_ranks WHERE rank = ? ORDER BY uuid LIMIT ? OFFSET ?")) {
+                statement.setString(1, rank);
+                statement.setInt(2, limit);
+                statement.setInt(3, offset);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        members.add(UUID.fromString(result.getString(1)));
+                    }
+                }
+            }
+            return members;
+        }, new ArrayList<>());
+    }
+    
+    @Override
+    public void appendHistory(UUID uuid, String entry, int maxEntries) {
+        write(INSERT_HISTORY, uuid.toString(), entry);
+        write(TRIM_HISTORY, uuid.toString(), uuid.toString(), maxEntries);
+    }
+    
+    @Override
+    public CompletableFuture<List<String>> getHistory(UUID uuid) {
+        // On the write thread, so queued history entries are included
+        return submit(connectionThread, () -> {
+            List<String> history = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT entry FROM rank_history WHERE uuid = ? ORDER BY id")) {
+                statement.setString(1, uuid.toString());
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        history.add(result.getString(1));
+                    }
+                }
+            }
+            return history;
+        }, new ArrayList<>());
+    }
+    
+    @Override
+    public void clearHistory(UUID uuid) {
+        write(DELETE_HISTORY, uuid.toString());
+    }
+    
+    @Override
+    public Map<UUID, TemporaryRankInfo> loadTemporaryRanks() {
+        return query(() -> {
+            Map<UUID, TemporaryRankInfo> ranks = new HashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, rank, original_rank, expiration FROM temporary_ranks")) {
+                while (result.next()) {
+                    ranks.put(UUID.fromString(result.getString(1)),
+                        new TemporaryRankInfo(result.getString(2), result.getString(3), result.getLong(4)));
+                }
+            }
+            return ranks;
+        }, new HashMap<>());
+    }
+    
+    @Override
+    public void saveTemporaryRank(UUID uuid, TemporaryRankInfo info) {
+        write(UPSERT_TEMPORARY, uuid.toString(), info.getRank(), info.getOriginalRank(), info.getExpirationTime());
+    }
+    
+    @Override
+    public void removeTemporaryRank(UUID uuid) {
+        write(DELETE_TEMPORARY, uuid.toString());
+    }
+    
+    @Override
+    public void removeTemporaryRanks(Collection<UUID> uuids) {
+        // Queued back to back, so the connection thread batches them into one statement
+        for (UUID uuid : uuids) {
+            write(DELETE_TEMPORARY, uuid.toString());
+        }
+    }
+    
+    @Override
+    public Map<UUID, List<TemporaryGrant>> loadTemporaryGrants() {
+        return query(() -> {
+            Map<UUID, List<TemporaryGrant>> grants = new HashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery(
+                     "SELECT uuid, kind, node, value, world, expiration FROM temporary_grants ORDER BY id")) {
+                while (result.next()) {
+                    grants.computeIfAbsent(UUID.fromString(result.getString(1)), k -> new ArrayList<>())
+                        .add(new TemporaryGrant(TemporaryGrant.Kind.valueOf(result.getString(2)), result.getString(3),
+                            result.getInt(4) != 0, result.getString(5), result.getLong(6)));
+                }
+            }
+            return grants;
+        }, new HashMap<>());
+    }
+    
+    @Override
+    public void saveTemporaryGrants(UUID uuid, List<TemporaryGrant> grants) {
+        // Applied in queue order, so the inserts always follow the delete
+        write(DELETE_GRANTS, uuid.toString());
+        for (TemporaryGrant grant : grants) {
+            write(INSERT_GRANT, uuid.toString(), grant.getKind().name(), grant.getNode(),
+                grant.getValue() ? 1 : 0, grant.getWorld(), grant.getExpirationTime());
+        }
+    }
+    
+    @Override
+    public Map<UUID, Map<String, String>> loadWorldRanks() {
+        return query(() -> {
+            Map<UUID, Map<String, String>> worldRanks = new HashMap<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, world, rank FROM world_ranks")) {
+                while (result.next()) {
+                    worldRanks.computeIfAbsent(UUID.fromString(result.getString(1)), k -> new HashMap<>())
+                        .put(result.getString(2), result.getString(3));
+                }
+            }
+            return worldRanks;
+        }, new HashMap<>());
+    }
+    
+    @Override
+    public void setWorldRank(UUID uuid, String world, String rank) {
+        if (rank == null) {
+            write(DELETE_WORLD, uuid.toString(), world);
+        } else {
+            write(UPSERT_WORLD, uuid.toString(), world, rank);
+        }
+    }
+    
+    @Override
+    public Map<UUID, Double> loadBalances() {
+        return new HashMap<>(balances);
+    }
+    
+    @Override
+    public double getBalance(UUID uuid) {
+        return balances.getOrDefault(uuid, 0.0);
+    }
+    
+    @Override
+    public void setBalance(UUID uuid, double balance) {
+        balances.put(uuid, balance);
+        write(UPSERT_BALANCE, uuid.toString(), balance);
+    }
+    
+    @Override
+    public void flush() {
+        // Queued drains run first on the connection thread
+        submit(connectionThread, () -> true, false).join();
+    }
+    
+    @Override
+    public void close() {
+        flush();
+        connectionThread.execute(() -> {
+            if (!unwritten.isEmpty()) {
+                plugin.getLogger().severe("Closing the database with " + unwritten.size() + " changes that could not be written");
+            }
+            closeQuietly(connection);
+        });
+        readerThread.execute(() -> closeQuietly(readConnection));
+        connectionThread.shutdown();
+        readerThread.shutdown();
+        try {
+            connectionThread.awaitTermination(10, TimeUnit.SECONDS);
+            readerThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void closeQuietly(Connection toClose) {
+        try {
+            if (toClose != null) {
+                toClose.close();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to close database: " + e.getMessage());
+        }
+    }
+    
+    private void write(String sql, Object... parameters) {
+        writes.add(new Write(sql, parameters));
+        if (drainScheduled.compareAndSet(false, true)) {
+            connectionThread.execute(this::drain);
+        }
+    }
+    
+    /**
+     * Apply every queued write in one transaction, batching runs of the same statement.
+     * If the transaction fails, the writes are tried one at a time to find the ones that
+     * fail on their own; whatever is left is tried again, before any newer writes, on the
+     * next drain or after {@link #RETRY_SECONDS}.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        Write polled;
+        while ((polled = writes.poll()) != null) {
+            unwritten.add(polled);
+        }
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        if (unwritten.size() > MAX_BACKLOG) {
+            List<Write> dropped = unwritten.subList(0, unwritten.size() - MAX_BACKLOG);
+            plugin.getLogger().severe("Database write backlog is full, dropping the " + dropped.size() + " oldest changes");
+            dropped.forEach(this::settle);
+            dropped.clear();
+        }
+        int count = unwritten.size();
+        if (writeBatch()) {
+            if (failing) {
+                plugin.getLogger().info("Wrote " + count + " delayed changes to the database");
+            }
+            unwritten.forEach(this::settle);
+            unwritten.clear();
+        } else {
+            writeEach();
+        }
+        if (unwritten.isEmpty()) {
+            failing = false;
+            return;
+        }
+        if (!failing && !connectionThread.isShutdown()) {
+            // Later writes trigger a drain anyway; this covers a quiet server
+            connectionThread.schedule(this::retry, RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+        failing = true;
+    }
+    
+    /**
+     * Write every unwritten change in one transaction.
+     *
+     * @return false if it failed and was rolled back
+     */
+    private boolean writeBatch() {
+        PreparedStatement statement = null;
+        String currentSql = null;
+        try {
+            connection.setAutoCommit(false);
+            for (Write write : unwritten) {
+                if (!write.sql.equals(currentSql)) {
+                    if (statement != null) {
+                        statement.executeBatch();
+                        statement.close();
+                    }
+                    statement = connection.prepareStatement(write.sql);
+                    currentSql = write.sql;
+                }
+                write.bind(statement);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            statement.close();
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to write " + unwritten.size() + " changes in one batch, writing them one by one: " + e.getMessage());
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+                connection.rollback();
+            } catch (SQLException rollback) {
+                plugin.getLogger().severe("Failed to roll back: " + rollback.getMessage());
+            }
+            return false;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to reset auto-commit: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Write unwritten changes one statement at a time, in order. A write that can never
+     * succeed, or has kept failing for {@link #GIVE_UP_MILLIS}, is logged and dropped. At
+     * any other failure the rest is kept, so writes to the same row stay in order.
+     */
+    private void writeEach() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Write> iterator = unwritten.iterator(); iterator.hasNext(); ) {
+            Write write = iterator.next();
+            try (PreparedStatement statement = connection.prepareStatement(write.sql)) {
+                write.bind(statement);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (write.failingSince == 0) {
+                    write.failingSince = now;
+                }
+                if (!isPermanent(e) && now - write.failingSince < GIVE_UP_MILLIS) {
+                    plugin.getLogger().severe("Failed to write " + unwritten.size() + " changes to the database, will retry: " + e.getMessage());
+                    return;
+                }
+                plugin.getLogger().severe("Dropping a database change that can't be written (" + write.sql + "): " + e.getMessage());
+            }
+            settle(write);
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Check if a write failed because of the write itself (constraint, type, size or
+     * parameter errors) rather than the database, so retrying it can't help.
+     */
+    private static boolean isPermanent(SQLException e) {
+        int code = e.getErrorCode() & 0xff; // Primary SQLite result code
+        return e instanceof SQLNonTransientException || code == 18 || code == 19 || code == 20 || code == 25;
+    }
+    
+    /**
+     * Forget a write that was written or dropped.
+     */
+    private void settle(Write write) {
+        if (write.sql.equals(UPSERT_RANK)) {
+            pendingRanks.remove(UUID.fromString((String) write.parameters[0]), write.parameters[1]);
+        }
+    }
+    
+    private void retry() {
+        drain();
+        if (failing && !connectionThread.isShutdown()) {
+            connectionThread.schedule(this::retry, RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Run a read on the reader connection and wait for it. Never waits on writes.
+     */
+    private <T> T query(SqlTask<T> task, T fallback) {
+        try {
+            return submit(readerThread, task, fallback).join();
+        } catch (Exception e) {
+            plugin.getLogger().severe("Database error: " + e.getMessage());
+            return fallback;
+        }
+    }
+    
+    /**
+     * Run a query over the player_ranks table. Queued rank writes aren't visible to the
+     * reader connection yet, so while there are any it runs on the write thread after them.
+     */
+    private <T> T queryRanks(ConnectionTask<T> task, T fallback) {
+        if (pendingRanks.isEmpty()) {
+            return query(() -> task.run(readConnection), fallback);
+        }
+        return submit(connectionThread, () -> task.run(connection), fallback).join();
+    }
+    
+    /**
+     * Run a task on one of the connection threads.
+     */
+    private <T> CompletableFuture<T> submit(ExecutorService thread, SqlTask<T> task, T fallback) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run();
+            } catch (Exception e) {
+                plugin.getLogger().severe("Database error: " + e.getMessage());
+                return fallback;
+            }
+        }, thread);
+    }
+    
+    private interface SqlTask<T> {
+        T run() throws Exception;
+    }
+    
+    private interface ConnectionTask<T> {
+        T run(Connection db) throws Exception;
+    }
+    
+    private static class Write {
+        private final String sql;
+        private final Object[] parameters;
+        // When this write first failed on its own, or 0
+        private long failingSince;
+        
+        private Write(String sql, Object[] parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+        
+        private void bind(PreparedStatement statement) throws SQLException {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.excrele.storage;
+
+import com.excrele.managers.TemporaryRankManager.TemporaryGrant;
+import com.excrele.managers.TemporaryRankManager.TemporaryRankInfo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for per-player data: rank assignments, rank history, temporary ranks,
+ * world ranks and internal balances.
+ *
+ * Rank definitions stay in ranks.yml for every backend; they are small, hand-edited
+ * and read through the usual FileConfiguration.
+ *
+ * Writes may be buffered; {@link #flush()} makes them durable.
+ */
+public interface StorageBackend {
+    
+    /**
+     * Get the name used for this backend in config.yml (storage-backend).
+     */
+    String getName();
+    
+    /**
+     * Open the backend.
+     *
+     * @return false if it can't be used
+     */
+    boolean init();
+    
+    /**
+     * Load every stored player rank.
+     */
+    Map<UUID, String> loadPlayerRanks();
+    
+    /**
+     * Load one player's rank, or null if none is stored.
+     */
+    String loadPlayerRank(UUID uuid);
+    
+    /**
+     * Load the ranks of several players; players with none stored are left out.
+     */
+    Map<UUID, String> loadPlayerRanks(Collection<UUID> uuids);
+    
+    /**
+     * Store several player ranks.
+     *
+     * @return false if they could not be stored; none of them are then
+     */
+    boolean setPlayerRanks(Map<UUID, String> ranks);
+    
+    /**
+     * Count the players stored with a rank.
+     */
+    int countRankMembers(String rank);
+    
+    /**
+     * Get players stored with a rank, ordered by UUID.
+     */
+    List<UUID> getRankMembers(String rank, int offset, int limit);
+    
+    /**
+     * Append an entry to a player's rank history, keeping at most maxEntries.
+     */
+    void appendHistory(UUID uuid, String entry, int maxEntries);
+    
+    /**
+     * Get a player's rank history, oldest first. The future may complete off the main thread.
+     */
+    CompletableFuture<List<String>> getHistory(UUID uuid);
+    
+    /**
+     * Remove a player's rank history.
+     */
+    void clearHistory(UUID uuid);
+    
+    /**
+     * Load every stored temporary rank.
+     */
+    Map<UUID, TemporaryRankInfo> loadTemporaryRanks();
+    
+    /**
+     * Store a temporary rank.
+     */
+    void saveTemporaryRank(UUID uuid, TemporaryRankInfo info);
+    
+    /**
+     * Remove a temporary rank.
+     */
+    void removeTemporaryRank(UUID uuid);
+    
+    /**
+     * Remove several temporary ranks in one write.
+     */
+    void removeTemporaryRanks(Collection<UUID> uuids);
+    
+    /**
+     * Load every stored timed grant, per player in the order they were granted.
+     */
+    Map<UUID, List<TemporaryGrant>> loadTemporaryGrants();
+    
+    /**
+     * Replace a player's stored timed grants; an empty list removes them.
+     */
+    void saveTemporaryGrants(UUID uuid, List<TemporaryGrant> grants);
+    
+    /**
+     * Load every world rank: player to world to rank.
+     */
+    Map<UUID, Map<String, String>> loadWorldRanks();
+    
+    /**
+     * Set or (with a null rank) remove a player's rank in one world.
+     */
+    void setWorldRank(UUID uuid, String world, String rank);
+    
+    /**
+     * Load every stored internal balance.
+     */
+    Map<UUID, Double> loadBalances();
+    
+    /**
+     * Get a player's internal balance.
+     */
+    double getBalance(UUID uuid);
+    
+    /**
+     * Set a player's internal balance.
+     */
+    void setBalance(UUID uuid, double balance);
+    
+    /**
+     * Write out any buffered changes and wait for them.
+     */
+    void flush();
+    
+    /**
+     * Flush and release the backend.
+     */
+    void close();
+}
@@ -0,0 +1,343 @@
+package com.excrele.storage;
+
+import com.excrele.managers.TemporaryRankManager.TemporaryGrant;
+import com.excrele.managers.TemporaryRankManager.TemporaryRankInfo;
+import com.excrele.yaml.YAMLFileManager;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The YAML storage backend: player ranks in ranks.yml (or the player shards), history in
+ * history.yml, temporary ranks in temporary-ranks.yml, world ranks in world-ranks.yml
+ * and balances under economy.players in ranks.yml. Writes go through YAMLFileManager.
+ */
+public class YamlStorageBackend implements StorageBackend {
+    // Past this many players one rewrite of ranks.yml is cheaper than a journal record each
+    private static final int JOURNAL_LIMIT = 64;
+    
+    private final JavaPlugin plugin;
+    private final YAMLFileManager fileManager;
+    
+    public YamlStorageBackend(JavaPlugin plugin, YAMLFileManager fileManager) {
+        this.plugin = plugin;
+        this.fileManager = fileManager;
+    }
+    
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+    
+    @Override
+    public boolean init() {
+        return true;
+    }
+    
+    @Override
+    public Map<UUID, String> loadPlayerRanks() {
+        if (fileManager.isUseShardedPlayers()) {
+            return fileManager.getPlayerStore().loadAll();
+        }
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        ConfigurationSection players = fileManager.getConfig("ranks.yml").getConfigurationSection("players");
+        if (players != null) {
+            for (String key : players.getKeys(false)) {
+                try {
+                    ranks.put(UUID.fromString(key), players.getString(key + ".rank", "default"));
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Skipping player entry with invalid UUID: " + key);
+                }
+            }
+        }
+        return ranks;
+    }
+    
+    @Override
+    public String loadPlayerRank(UUID uuid) {
+        if (fileManager.isUseShardedPlayers()) {
+            return fileManager.getPlayerStore().getRank(uuid);
+        }
+        return fileManager.getConfig("ranks.yml").getString("players." + uuid + ".rank");
+    }
+    
+    @Override
+    public Map<UUID, String> loadPlayerRanks(Collection<UUID> uuids) {
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        for (UUID uuid : uuids) {
+            String rank = loadPlayerRank(uuid);
+            if (rank != null) {
+                ranks.put(uuid, rank);
+            }
+        }
+        return ranks;
+    }
+    
+    @Override
+    public boolean setPlayerRanks(Map<UUID, String> ranks) {
+        if (fileManager.isUseShardedPlayers()) {
+            for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+                fileManager.getPlayerStore().setRank(entry.getKey(), entry.getValue());
+            }
+            return true;
+        }
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        if (ranks.size() > JOURNAL_LIMIT) {
+            for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+                ranksConfig.set("players." + entry.getKey() + ".rank", entry.getValue());
+            }
+            fileManager.markDirty("ranks.yml", ranksConfig);
+            return true;
+        }
+        Map<String, Object> previous = new LinkedHashMap<>();
+        boolean stored = true;
+        for (Map.Entry<UUID, String> entry : ranks.entrySet()) {
+            String path = "players." + entry.getKey() + ".rank";
+            previous.put(path, ranksConfig.get(path));
+            ranksConfig.set(path, entry.getValue());
+            stored &= fileManager.recordChange("ranks.yml", ranksConfig, path);
+        }
+        if (!stored) {
+            // Some may already be journaled, so the old values are recorded again
+            for (Map.Entry<String, Object> entry : previous.entrySet()) {
+                ranksConfig.set(entry.getKey(), entry.getValue());
+                fileManager.recordChange("ranks.yml", ranksConfig, entry.getKey());
+            }
+            plugin.getLogger().severe("Failed to store ranks of " + ranks.size() + " players, rolled them back");
+        }
+        return stored;
+    }
+    
+    @Override
+    public int countRankMembers(String rank) {
+        int count = 0;
+        for (String memberRank : loadPlayerRanks().values()) {
+            if (rank.equals(memberRank)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Override
+    public List<UUID> getRankMembers(String rank, int offset, int limit) {
+        List<UUID> members = new ArrayList<>();
+        for (Map.Entry<UUID, String> entry : loadPlayerRanks().entrySet()) {
+            if (rank.equals(entry.getValue())) {
+                members.add(entry.getKey());
+            }
+        }
+        Collections.sort(members);
+        if (offset >= members.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(members.subList(offset, (int) Math.min(members.size(), (long) offset + limit)));
+    }
+    
+    @Override
+    public void appendHistory(UUID uuid, String entry, int maxEntries) {
+        FileConfiguration historyConfig = fileManager.getConfig("history.yml");
+        String playerKey = "players." + uuid;
+        
+        List<String> history = new ArrayList<>(historyConfig.getStringList(playerKey + ".changes"));
+        history.add(entry);
+        
+        // Limit history size
+        if (history.size() > maxEntries) {
+            history = new ArrayList<>(history.subList(history.size() - maxEntries, history.size()));
+        }
+        
+        historyConfig.set(playerKey + ".changes", history);
+        historyConfig.set(playerKey + ".last-updated", entry.substring(0, Math.max(0, entry.indexOf('|'))));
+        fileManager.markDirty("history.yml", historyConfig);
+    }
+    
+    @Override
+    public CompletableFuture<List<String>> getHistory(UUID uuid) {
+        return CompletableFuture.completedFuture(fileManager.getConfig("history.yml").getStringList("players." + uuid + ".changes"));
+    }
+    
+    @Override
+    public void clearHistory(UUID uuid) {
+        FileConfiguration historyConfig = fileManager.getConfig("history.yml");
+        historyConfig.set("players." + uuid, null);
+        fileManager.markDirty("history.yml", historyConfig);
+    }
+    
+    @Override
+    public Map<UUID, TemporaryRankInfo> loadTemporaryRanks() {
+        Map<UUID, TemporaryRankInfo> ranks = new HashMap<>();
+        ConfigurationSection players = fileManager.getConfig("temporary-ranks.yml").getConfigurationSection("players");
+        if (players == null) {
+            return ranks;
+        }
+        for (String playerKey : players.getKeys(false)) {
+            try {
+                UUID playerUUID = UUID.fromString(playerKey);
+                String rank = players.getString(playerKey + ".rank");
+                String originalRank = players.getString(playerKey + ".original-rank", "default");
+                long expiration = players.getLong(playerKey + ".expiration", 0);
+                ranks.put(playerUUID, new TemporaryRankInfo(rank, originalRank, expiration));
+            } catch (IllegalArgumentException e) {
+                // Invalid UUID, skip
+            }
+        }
+        return ranks;
+    }
+    
+    @Override
+    public void saveTemporaryRank(UUID uuid, TemporaryRankInfo info) {
+        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
+        tempConfig.set("players." + uuid + ".rank", info.getRank());
+        tempConfig.set("players." + uuid + ".original-rank", info.getOriginalRank());
+        tempConfig.set("players." + uuid + ".expiration", String.valueOf(info.getExpirationTime()));
+        tempConfig.set("players." + uuid + ".assigned-at", System.currentTimeMillis());
+        fileManager.markDirty("temporary-ranks.yml", tempConfig);
+    }
+    
+    @Override
+    public void removeTemporaryRank(UUID uuid) {
+        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
+        tempConfig.set("players." + uuid, null);
+        fileManager.markDirty("temporary-ranks.yml", tempConfig);
+    }
+    
+    @Override
+    public void removeTemporaryRanks(Collection<UUID> uuids) {
+        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
+        for (UUID uuid : uuids) {
+            tempConfig.set("players." + uuid, null);
+        }
+        fileManager.markDirty("temporary-ranks.yml", tempConfig);
+    }
+    
+    @Override
+    public Map<UUID, List<TemporaryGrant>> loadTemporaryGrants() {
+        Map<UUID, List<TemporaryGrant>> grants = new HashMap<>();
+        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
+        ConfigurationSection section = tempConfig.getConfigurationSection("grants");
+        if (section == null) {
+            return grants;
+        }
+        for (String playerKey : section.getKeys(false)) {
+            try {
+                UUID playerUUID = UUID.fromString(playerKey);
+                List<TemporaryGrant> playerGrants = new ArrayList<>();
+                for (Map<?, ?> entry : section.getMapList(playerKey)) {
+                    playerGrants.add(new TemporaryGrant(
+                        TemporaryGrant.Kind.valueOf(String.valueOf(entry.get("kind"))),
+                        String.valueOf(entry.get("node")),
+                        !Boolean.FALSE.equals(entry.get("value")),
+                        entry.get("world") != null ? String.valueOf(entry.get("world")) : null,
+                        Long.parseLong(String.valueOf(entry.get("expiration")))));
+                }
+                grants.put(playerUUID, playerGrants);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid timed grant in temporary-ranks.yml: " + playerKey);
+            }
+        }
+        return grants;
+    }
+    
+    @Override
+    public void saveTemporaryGrants(UUID uuid, List<TemporaryGrant> grants) {
+        FileConfiguration tempConfig = fileManager.getConfig("temporary-ranks.yml");
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (TemporaryGrant grant : grants) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("kind", grant.getKind().name());
+            entry.put("node", grant.getNode());
+            entry.put("value", grant.getValue());
+            if (grant.getWorld() != null) {
+                entry.put("world", grant.getWorld());
+            }
+            entry.put("expiration", grant.getExpirationTime());
+            entries.add(entry);
+        }
+        tempConfig.set("grants." + uuid, entries.isEmpty() ? null : entries);
+        fileManager.markDirty("temporary-ranks.yml", tempConfig);
+    }
+    
+    @Override
+    public Map<UUID, Map<String, String>> loadWorldRanks() {
+        Map<UUID, Map<String, String>> worldRanks = new HashMap<>();
+        ConfigurationSection section = fileManager.getConfig("world-ranks.yml").getConfigurationSection("world-ranks");
+        if (section == null) {
+            return worldRanks;
+        }
+        for (String playerUUIDStr : section.getKeys(false)) {
+            try {
+                UUID playerUUID = UUID.fromString(playerUUIDStr);
+                Map<String, String> worldRanksForPlayer = new HashMap<>();
+                for (String world : section.getConfigurationSection(playerUUIDStr).getKeys(false)) {
+                    worldRanksForPlayer.put(world, section.getString(playerUUIDStr + "." + world));
+                }
+                worldRanks.put(playerUUID, worldRanksForPlayer);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid UUID in world-ranks.yml: " + playerUUIDStr);
+            }
+        }
+        return worldRanks;
+    }
+    
+    @Override
+    public void setWorldRank(UUID uuid, String world, String rank) {
+        FileConfiguration config = fileManager.getConfig("world-ranks.yml");
+        config.set("world-ranks." + uuid + "." + world, rank);
+        ConfigurationSection player = config.getConfigurationSection("world-ranks." + uuid);
+        if (player != null && player.getKeys(false).isEmpty()) {
+            config.set("world-ranks." + uuid, null);
+        }
+        fileManager.markDirty("world-ranks.yml", config);
+    }
+    
+    @Override
+    public Map<UUID, Double> loadBalances() {
+        Map<UUID, Double> balances = new HashMap<>();
+        ConfigurationSection players = fileManager.getConfig("ranks.yml").getConfigurationSection("economy.players");
+        if (players == null) {
+            return balances;
+        }
+        for (String key : players.getKeys(false)) {
+            try {
+                balances.put(UUID.fromString(key), players.getDouble(key + ".balance", 0.0));
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Skipping balance with invalid UUID: " + key);
+            }
+        }
+        return balances;
+    }
+    
+    @Override
+    public double getBalance(UUID uuid) {
+        return fileManager.getConfig("ranks.yml").getDouble("economy.players." + uuid + ".balance", 0.0);
+    }
+    
+    @Override
+    public void setBalance(UUID uuid, double balance) {
+        FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+        String path = "economy.players." + uuid + ".balance";
+        ranksConfig.set(path, balance);
+        fileManager.recordChange("ranks.yml", ranksConfig, path);
+    }
+    
+    @Override
+    public void flush() {
+        fileManager.flush();
+    }
+    
+    @Override
+    public void close() {
+        flush();
+    }
+}
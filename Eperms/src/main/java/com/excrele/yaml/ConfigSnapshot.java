@@ -0,0 +1,123 @@
+package com.excrele.yaml;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of a configuration's values and comments.
+ *
+ * Taking a snapshot only copies maps and lists, so it is cheap enough for the thread
+ * that edits the configuration. Turning it into YAML is the expensive part, and since
+ * nothing else can change the copy, that can happen on any thread.
+ */
+public final class ConfigSnapshot {
+    private final Map<String, Object> values = new LinkedHashMap<>(); // key -> value or ConfigSnapshot
+    private final Map<String, List<String>> comments = new LinkedHashMap<>();
+    private final Map<String, List<String>> inlineComments = new LinkedHashMap<>();
+    private final List<String> header;
+    private final List<String> footer;
+    
+    private ConfigSnapshot(ConfigurationSection section, Collection<String> keys, boolean wholeFile) {
+        for (String key : keys) {
+            Object value = section.get(key);
+            if (value == null) {
+                continue;
+            }
+            values.put(key, value instanceof ConfigurationSection
+                ? new ConfigSnapshot((ConfigurationSection) value, ((ConfigurationSection) value).getKeys(false), false)
+                : copy(value));
+            copyComments(key, section.getComments(key), comments);
+            copyComments(key, section.getInlineComments(key), inlineComments);
+        }
+        if (wholeFile && section instanceof FileConfiguration) {
+            FileConfiguration config = (FileConfiguration) section;
+            header = copyLines(config.options().getHeader());
+            footer = copyLines(config.options().getFooter());
+        } else {
+            header = Collections.emptyList();
+            footer = Collections.emptyList();
+        }
+    }
+    
+    /**
+     * Copy a whole configuration, including its header and footer.
+     */
+    public static ConfigSnapshot of(ConfigurationSection section) {
+        return new ConfigSnapshot(section, section.getKeys(false), true);
+    }
+    
+    /**
+     * Copy only the given top-level keys of a configuration. Missing keys are left out.
+     */
+    public static ConfigSnapshot of(ConfigurationSection section, Collection<String> keys) {
+        return new ConfigSnapshot(section, keys, false);
+    }
+    
+    /**
+     * Serialize the copy to YAML text. Safe to call from any thread.
+     */
+    public String toYaml() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.options().setHeader(header).setFooter(footer);
+        writeTo(config);
+        return config.saveToString();
+    }
+    
+    private void writeTo(ConfigurationSection target) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() instanceof ConfigSnapshot) {
+                ((ConfigSnapshot) entry.getValue()).writeTo(target.createSection(entry.getKey()));
+            } else {
+                target.set(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : comments.entrySet()) {
+            target.setComments(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<String>> entry : inlineComments.entrySet()) {
+            target.setInlineComments(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private static Object copy(Object value) {
+        if (value instanceof ConfigurationSection) {
+            // Sections nested in lists are written as plain maps anyway
+            value = ((ConfigurationSection) value).getValues(false);
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                copy.add(copy(element));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+        // Strings, numbers and booleans are immutable
+        return value;
+    }
+    
+    private static void copyComments(String key, List<String> lines, Map<String, List<String>> target) {
+        if (lines != null && !lines.isEmpty()) {
+            target.put(key, copyLines(lines));
+        }
+    }
+    
+    private static List<String> copyLines(List<String> lines) {
+        return lines == null || lines.isEmpty() ? Collections.<String>emptyList()
+            : Collections.unmodifiableList(new ArrayList<>(lines));
+    }
+}
@@ -0,0 +1,166 @@
+package com.excrele.yaml;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * The plugin's own pool for file work such as backups, exports and imports, so it
+ * doesn't compete with other plugins on the JVM's common pool.
+ *
+ * The queue is bounded: when it is full a background submitter runs the task itself,
+ * which slows producers down instead of piling up work. The server thread never runs or
+ * waits for file work; its task fails at once instead. Tasks submitted
+ * with the same key (e.g. a file name) run one after another, never concurrently.
+ */
+public class IOExecutor {
+    private final ThreadPoolExecutor executor;
+    private final Logger logger;
+    private final Map<String, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    
+    public IOExecutor(int threads, int queueSize, Logger logger) {
+        this.logger = logger;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "ExcrelePerms-IO-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, pool) -> {
+                // Keyed tasks chained after shutdown began end up here too, and still have to run
+                if (pool.isShutdown()) {
+                    runnable.run();
+                    return;
+                }
+                if (!Bukkit.isPrimaryThread()) {
+                    // Backpressure: a background producer does the work itself
+                    callerRuns.incrementAndGet();
+                    runnable.run();
+                    return;
+                }
+                // The server thread must not stall, so its task fails fast. This includes keyed
+                // tasks chained on the server thread when the task before them already finished
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("File work queue is full");
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * Run a task on the pool. The future fails if the queue stays full.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warning("File task rejected, the I/O queue is full");
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        maxQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+        return future;
+    }
+    
+    /**
+     * Run many tasks on the pool, keeping at most one per pool thread queued or running,
+     * so a large job never fills the queue. Each task is submitted when an earlier one finishes.
+     *
+     * @return the results in task order
+     */
+    public <T> CompletableFuture<List<T>> submitAll(List<Supplier<T>> tasks) {
+        AtomicReferenceArray<T> results = new AtomicReferenceArray<>(tasks.size());
+        AtomicInteger next = new AtomicInteger();
+        int lanes = Math.min(executor.getMaximumPoolSize(), tasks.size());
+        CompletableFuture<?>[] running = new CompletableFuture<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            running[i] = runNext(tasks, results, next);
+        }
+        return CompletableFuture.allOf(running).thenApply(ignored -> {
+            List<T> list = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                list.add(results.get(i));
+            }
+            return list;
+        });
+    }
+    
+    private <T> CompletableFuture<Void> runNext(List<Supplier<T>> tasks, AtomicReferenceArray<T> results, AtomicInteger next) {
+        int index = next.getAndIncrement();
+        if (index >= tasks.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(tasks.get(index)).thenCompose(result -> {
+            results.set(index, result);
+            return runNext(tasks, results, next);
+        });
+    }
+    
+    /**
+     * Run a task on the pool after every earlier task with the same key has finished.
+     */
+    public <T> CompletableFuture<T> submit(String key, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(key, future);
+        CompletableFuture<?> after = previous != null ? previous : CompletableFuture.completedFuture(null);
+        // Failures of the previous task don't stop this one
+        after.handle((result, error) -> null).thenCompose(ignored -> submit(task))
+            .whenComplete((result, error) -> {
+                tails.remove(key, future);
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            });
+        return future;
+    }
+    
+    /**
+     * Get pool and queue statistics.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("max_queued", maxQueued.get());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("caller_runs", callerRuns.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+    
+    /**
+     * Finish every queued task, waiting up to the timeout, then stop the threads.
+     */
+    public void shutdown(long timeoutSeconds) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for " + executor.getQueue().size() + " queued file tasks");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
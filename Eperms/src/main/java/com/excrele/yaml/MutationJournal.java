@@ -0,0 +1,332 @@
+package com.excrele.yaml;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of path-level changes to one YAML file.
+ *
+ * Each record sets (or removes) a single path and is one line:
+ * {@code <sequence> <crc32> <base64 yaml payload>}. Appends are queued and written by the
+ * writer thread in group-commit batches with one fsync per batch. Once the full file has
+ * been written, the journal is truncated; on startup the remaining tail is replayed.
+ */
+public class MutationJournal {
+    private final File file;
+    private final Executor writer;
+    private final Logger logger;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean failing;
+    
+    // Only written from the writer thread
+    private volatile long size;
+    private FileChannel channel;
+    private long lastWritten;
+    private final ByteArrayOutputStream unwritten = new ByteArrayOutputStream();
+    private long lastUnwritten;
+    
+    public MutationJournal(File file, Executor writer, Logger logger) {
+        this.file = file;
+        this.writer = writer;
+        this.logger = logger;
+        this.size = file.length();
+    }
+    
+    /**
+     * Record that a path now has the given value (null removes it).
+     * Call from the thread that changed the configuration; the value is encoded immediately.
+     *
+     * @return the sequence number of the record, or -1 if it could not be recorded because
+     *     the value can't be encoded or the last write to the journal failed
+     */
+    public long append(String path, Object value) {
+        if (failing) {
+            return -1;
+        }
+        byte[] line;
+        long seq;
+        synchronized (this) {
+            // Records must be queued in sequence order
+            seq = sequence.incrementAndGet();
+            try {
+                line = encode(seq, path, value);
+            } catch (RuntimeException e) {
+                logger.severe("Failed to encode journal record for " + path + ": " + e.getMessage());
+                sequence.decrementAndGet();
+                return -1;
+            }
+            queue.add(new Entry(seq, line));
+        }
+        if (drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+        return seq;
+    }
+    
+    /**
+     * Get the sequence number of the last appended record.
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+    
+    /**
+     * Get the size in bytes of the records written to the journal so far.
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Check if the last write to the journal failed. Appends are refused until a later
+     * drain (e.g. the one before a truncate) succeeds.
+     */
+    public boolean isFailing() {
+        return failing;
+    }
+    
+    /**
+     * Write every queued record and fsync once for the whole batch. A batch that fails
+     * is kept and written again before newer records on the next drain.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            unwritten.write(entry.line, 0, entry.line.length);
+            lastUnwritten = entry.seq;
+        }
+        if (unwritten.size() == 0) {
+            return;
+        }
+        try {
+            FileChannel out = open();
+            long start = out.position();
+            ByteBuffer buffer = ByteBuffer.wrap(unwritten.toByteArray());
+            try {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            } catch (IOException e) {
+                // Drop the partial batch so the retry doesn't leave a torn record before it
+                out.truncate(start);
+                throw e;
+            }
+            size += unwritten.size();
+            lastWritten = lastUnwritten;
+            unwritten.reset();
+            failing = false;
+        } catch (IOException e) {
+            failing = true;
+            logger.severe("Failed to write journal, will retry: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Drop records up to and including the given sequence, once the file they describe
+     * has been written in full. Must run on the writer thread.
+     */
+    void truncate(long upTo) {
+        drain();
+        if (failing) {
+            return;
+        }
+        try {
+            if (lastWritten <= upTo) {
+                open().truncate(0);
+                size = 0;
+                return;
+            }
+            // Records newer than the snapshot are already on disk; keep only those
+            List<String> keep = new ArrayList<>();
+            for (String line : readLines()) {
+                if (parseSequence(line) > upTo) {
+                    keep.add(line);
+                }
+            }
+            FileChannel out = open();
+            out.truncate(0);
+            ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+            for (String line : keep) {
+                byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                rewritten.write(bytes, 0, bytes.length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(rewritten.toByteArray());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+            size = rewritten.size();
+        } catch (IOException e) {
+            logger.severe("Failed to compact journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Apply every intact record in the journal to a configuration. Stops at the first
+     * damaged record, which can only be a torn write at the tail.
+     *
+     * @return the number of records applied
+     */
+    public int replay(ConfigurationSection target) {
+        if (!file.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        try {
+            for (String line : readLines()) {
+                long seq = parseSequence(line);
+                YamlConfiguration record = decode(line);
+                if (seq <= 0 || record == null) {
+                    logger.warning("Ignoring damaged journal tail after " + applied + " records");
+                    break;
+                }
+                String path = record.getString("path");
+                if (record.getBoolean("removed", false)) {
+                    target.set(path, null);
+                } else if (record.isConfigurationSection("value")) {
+                    target.createSection(path, toMap(record.getConfigurationSection("value")));
+                } else {
+                    target.set(path, record.get("value"));
+                }
+                sequence.set(Math.max(sequence.get(), seq));
+                applied++;
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to read journal: " + e.getMessage());
+        }
+        return applied;
+    }
+    
+    /**
+     * Close the journal file. Must run on the writer thread.
+     */
+    void close() {
+        drain();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warning("Failed to close journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+    
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            file.getParentFile().mkdirs();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+    
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+    
+    private static byte[] encode(long seq, String path, Object value) {
+        YamlConfiguration record = new YamlConfiguration();
+        record.set("path", path);
+        if (value == null) {
+            record.set("removed", true);
+        } else if (value instanceof ConfigurationSection) {
+            record.createSection("value", toMap((ConfigurationSection) value));
+        } else {
+            record.set("value", value);
+        }
+        byte[] payload = record.saveToString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        String line = seq + " " + Long.toHexString(crc.getValue()) + " " + Base64.getEncoder().encodeToString(payload) + "\n";
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static YamlConfiguration decode(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            byte[] payload = Base64.getDecoder().decode(parts[2]);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != Long.parseLong(parts[1], 16)) {
+                return null;
+            }
+            YamlConfiguration record = new YamlConfiguration();
+            record.loadFromString(new String(payload, StandardCharsets.UTF_8));
+            return record;
+        } catch (IllegalArgumentException | InvalidConfigurationException e) {
+            return null;
+        }
+    }
+    
+    private static long parseSequence(String line) {
+        int space = line.indexOf(' ');
+        try {
+            return space > 0 ? Long.parseLong(line.substring(0, space)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Copy a section into plain nested maps so it can be re-created anywhere.
+     */
+    private static Map<String, Object> toMap(ConfigurationSection section) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String key : section.getKeys(false)) {
+            Object value = section.get(key);
+            map.put(key, value instanceof ConfigurationSection ? toMap((ConfigurationSection) value) : value);
+        }
+        return map;
+    }
+    
+    private static class Entry {
+        private final long seq;
+        private final byte[] line;
+        
+        private Entry(long seq, byte[] line) {
+            this.seq = seq;
+            this.line = line;
+        }
+    }
+}
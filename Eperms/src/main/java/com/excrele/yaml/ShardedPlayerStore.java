@@ -0,0 +1,230 @@
+package com.excrele.yaml;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Stores player assignments in 256 small files, players/00.yml to players/ff.yml,
+ * picked by the first byte of the UUID. A change only rewrites the shard it touched.
+ * Each shard keeps the usual layout: players.&lt;uuid&gt;.rank
+ */
+public class ShardedPlayerStore {
+    public static final int SHARDS = 256;
+    private static final String DIRECTORY = "players";
+    
+    private final YAMLFileManager fileManager;
+    private final Logger logger;
+    
+    public ShardedPlayerStore(YAMLFileManager fileManager, Logger logger) {
+        this.fileManager = fileManager;
+        this.logger = logger;
+    }
+    
+    /**
+     * Get the file name of the shard holding a player.
+     */
+    public static String getShardFile(UUID uuid) {
+        return getShardFile((int) (uuid.getMostSignificantBits() >>> 56));
+    }
+    
+    /**
+     * Get the file name of a shard by number.
+     */
+    public static String getShardFile(int shard) {
+        return String.format("%s/%02x.yml", DIRECTORY, shard);
+    }
+    
+    /**
+     * Load every player's rank, reading a few shards at a time on the I/O pool. Shards without unwritten
+     * changes are not kept in the file cache afterwards.
+     */
+    public Map<UUID, String> loadAll() {
+        List<Supplier<Map<UUID, String>>> tasks = new ArrayList<>(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String fileName = getShardFile(shard);
+            tasks.add(() -> {
+                Map<UUID, String> ranks = readShard(fileName);
+                if (!fileManager.hasPendingChanges(fileName)) {
+                    fileManager.clearCache(fileName);
+                }
+                return ranks;
+            });
+        }
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        for (Map<UUID, String> shardRanks : fileManager.getIOExecutor().submitAll(tasks).join()) {
+            ranks.putAll(shardRanks);
+        }
+        return ranks;
+    }
+    
+    private Map<UUID, String> readShard(String fileName) {
+        Map<UUID, String> ranks = new LinkedHashMap<>();
+        // Don't create empty files for shards that were never written
+        if (!new File(fileManager.getDataFolder(), fileName).exists() && !fileManager.hasPendingChanges(fileName)) {
+            return ranks;
+        }
+        ConfigurationSection players = fileManager.getConfig(fileName).getConfigurationSection("players");
+        if (players == null) {
+            return ranks;
+        }
+        for (String key : players.getKeys(false)) {
+            try {
+                ranks.put(UUID.fromString(key), players.getString(key + ".rank", "default"));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping player entry with invalid UUID in " + fileName + ": " + key);
+            }
+        }
+        return ranks;
+    }
+    
+    /**
+     * Get a player's rank, or null if they have none stored.
+     */
+    public String getRank(UUID uuid) {
+        String fileName = getShardFile(uuid);
+        String rank = readShard(fileName).get(uuid);
+        // Single lookups come from lazy loading; don't keep the whole shard cached for them
+        if (!fileManager.hasPendingChanges(fileName)) {
+            fileManager.clearCache(fileName);
+        }
+        return rank;
+    }
+    
+    /**
+     * Set a player's rank and queue their shard for writing.
+     */
+    public void setRank(UUID uuid, String rank) {
+        String fileName = getShardFile(uuid);
+        FileConfiguration shard = fileManager.getConfig(fileName);
+        shard.set("players." + uuid + ".rank", rank);
+        fileManager.markDirty(fileName, shard);
+    }
+    
+    /**
+     * Get the shard files the entries of a players section belong in.
+     */
+    public static Set<String> getShardFiles(ConfigurationSection players) {
+        Set<String> fileNames = new LinkedHashSet<>();
+        for (String key : players.getKeys(false)) {
+            try {
+                fileNames.add(getShardFile(UUID.fromString(key)));
+            } catch (IllegalArgumentException e) {
+                // Skipped by importPlayers too
+            }
+        }
+        return fileNames;
+    }
+    
+    /**
+     * Load shards into the file cache, so that moving players in or out of them later
+     * doesn't parse files. Safe to call off the main thread.
+     */
+    public void preload(Collection<String> fileNames) {
+        for (String fileName : fileNames) {
+            fileManager.getConfig(fileName);
+        }
+    }
+    
+    /**
+     * Load every shard that exists on disk into the file cache. Safe to call off the
+     * main thread.
+     */
+    public void preloadExisting() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String fileName = getShardFile(shard);
+            if (new File(fileManager.getDataFolder(), fileName).exists()) {
+                fileManager.getConfig(fileName);
+            }
+        }
+    }
+    
+    /**
+     * Move every entry of a players section into the shards, keeping any other
+     * per-player keys, and queue the touched shards for writing. This edits the cached
+     * shards, so call it on the main thread (after {@link #preload} to keep file reads
+     * off it).
+     *
+     * @return the writes of the touched shards
+     */
+    public List<CompletableFuture<Boolean>> importPlayers(ConfigurationSection players) {
+        Map<String, FileConfiguration> shards = new LinkedHashMap<>();
+        for (String key : players.getKeys(false)) {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping player entry with invalid UUID: " + key);
+                continue;
+            }
+            String fileName = getShardFile(uuid);
+            FileConfiguration shard = shards.computeIfAbsent(fileName, fileManager::getConfig);
+            shard.set("players." + key, players.get(key));
+        }
+        List<CompletableFuture<Boolean>> writes = new ArrayList<>();
+        for (Map.Entry<String, FileConfiguration> entry : shards.entrySet()) {
+            writes.add(fileManager.saveConfig(entry.getKey(), entry.getValue()));
+        }
+        return writes;
+    }
+    
+    /**
+     * Copy every shard into one players section, e.g. to merge back into ranks.yml.
+     */
+    public FileConfiguration exportPlayers() {
+        FileConfiguration merged = new YamlConfiguration();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String fileName = getShardFile(shard);
+            if (!new File(fileManager.getDataFolder(), fileName).exists() && !fileManager.hasPendingChanges(fileName)) {
+                continue;
+            }
+            ConfigurationSection players = fileManager.getConfig(fileName).getConfigurationSection("players");
+            if (players != null) {
+                for (String key : players.getKeys(false)) {
+                    merged.set("players." + key, players.get(key));
+                }
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Forget every shard, including unwritten changes, and delete the shard files in the
+     * background after the writes already queued. Call on the main thread once their
+     * contents have been moved elsewhere.
+     *
+     * @return the deletions
+     */
+    public List<CompletableFuture<Boolean>> deleteShardsAsync() {
+        List<CompletableFuture<Boolean>> deletions = new ArrayList<>(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            deletions.add(fileManager.deleteFile(getShardFile(shard)));
+        }
+        return deletions;
+    }
+    
+    /**
+     * Delete every shard file once its contents have been moved elsewhere.
+     */
+    public void deleteShards() {
+        fileManager.flush();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String fileName = getShardFile(shard);
+            fileManager.clearCache(fileName);
+            new File(fileManager.getDataFolder(), fileName).delete();
+        }
+    }
+}
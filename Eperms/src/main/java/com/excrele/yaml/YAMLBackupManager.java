@@ -37,7 +37,8 @@ public class YAMLBackupManager {
      * Create a backup of all YAML files.
      */
     public CompletableFuture<String> createBackup() {
-        return CompletableFuture.supplyAsync(() -> {
+        // Backups and restores share the backup folder, so they run one at a time
+        return fileManager.getIOExecutor().submit("backups", () -> {
             try {
                 String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
                 String backupName = "backup_" + timestamp;
@@ -103,7 +104,7 @@ public class YAMLBackupManager {
      * Restore from a backup.
      */
     public CompletableFuture<Boolean> restoreBackup(String backupName) {
-        return CompletableFuture.supplyAsync(() -> {
+        return fileManager.getIOExecutor().submit("backups", () -> {
             try {
                 File backupFile = new File(backupFolder, backupName + ".zip");
                 if (!backupFile.exists()) {
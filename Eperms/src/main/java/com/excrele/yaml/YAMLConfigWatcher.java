@@ -9,16 +9,19 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Watches config.yml for changes and auto-reloads.
+ * Watches the plugin's YAML files and invalidates YAMLFileManager's cache when they
+ * are edited outside the plugin. The plugin's own writes are filtered out.
  */
 public class YAMLConfigWatcher {
     private final ExcrelePerms plugin;
-    private final Map<File, WatchKey> watchKeys = new HashMap<>();
+    private final YAMLFileManager fileManager;
+    private final Map<WatchKey, String> watchKeys = new HashMap<>(); // key -> directory prefix
     private WatchService watchService;
     private volatile boolean running = false;
     
-    public YAMLConfigWatcher(ExcrelePerms plugin) {
+    public YAMLConfigWatcher(ExcrelePerms plugin, YAMLFileManager fileManager) {
         this.plugin = plugin;
+        this.fileManager = fileManager;
     }
     
     /**
@@ -36,16 +39,11 @@ public class YAMLConfigWatcher {
         
         try {
             watchService = FileSystems.getDefault().newWatchService();
-            File configFile = new File(plugin.getDataFolder(), "config.yml");
-            
-            if (configFile.exists()) {
-                Path configPath = configFile.getParentFile().toPath();
-                WatchKey key = configPath.register(watchService, 
-                    StandardWatchEventKinds.ENTRY_MODIFY);
-                watchKeys.put(configFile, key);
-            }
+            register(plugin.getDataFolder(), "");
+            register(new File(plugin.getDataFolder(), "players"), "players/");
             
             running = true;
+            fileManager.setWatched(true);
             startWatcherThread();
             
             plugin.getLogger().info("Config file watcher started!");
@@ -54,11 +52,20 @@ public class YAMLConfigWatcher {
         }
     }
     
+    private void register(File directory, String prefix) throws java.io.IOException {
+        directory.mkdirs();
+        // Atomic replaces (ours and many editors') show up as creates
+        WatchKey key = directory.toPath().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchKeys.put(key, prefix);
+    }
+    
     /**
      * Stop watching.
      */
     public void stopWatching() {
         running = false;
+        fileManager.setWatched(false);
         if (watchService != null) {
             try {
                 watchService.close();
@@ -69,42 +76,47 @@ public class YAMLConfigWatcher {
     }
     
     private void startWatcherThread() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!running) {
-                    cancel();
-                    return;
-                }
-                
+        Thread watcherThread = new Thread(() -> {
+            while (running) {
+                WatchKey key;
                 try {
-                    WatchKey key = watchService.poll();
-                    if (key != null) {
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            WatchEvent.Kind<?> kind = event.kind();
-                            
-                            if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                                Path changed = (Path) event.context();
-                                if (changed.toString().equals("config.yml")) {
-                                    // Reload config after a short delay
-                                    new BukkitRunnable() {
-                                        @Override
-                                        public void run() {
-                                            plugin.getLogger().info("Config.yml changed, reloading...");
-                                            // Note: Actual reload is handled by the plugin's reload command
-                                            // This is just a notification that the file changed
-                                        }
-                                    }.runTask(plugin);
-                                }
-                            }
-                        }
-                        key.reset();
+                    key = watchService.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    break;
+                }
+                String prefix = watchKeys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || prefix == null) {
+                        continue;
+                    }
+                    String fileName = prefix + event.context();
+                    if (fileName.endsWith(".yml") && fileManager.onFileChanged(fileName)) {
+                        onExternalChange(fileName);
                     }
-                } catch (Exception e) {
-                    // Ignore
                 }
+                key.reset();
             }
-        }.runTaskTimerAsynchronously(plugin, 20L, 20L); // Check every second
+            // The cache can no longer rely on change events
+            fileManager.setWatched(false);
+        }, "ExcrelePerms-Watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
     }
-}
 
+    private void onExternalChange(String fileName) {
+        if (plugin.getRankReloadManager() != null) {
+            plugin.getRankReloadManager().queueReload(fileName);
+        }
+        if (!fileName.equals("config.yml") || !plugin.isEnabled()) {
+            return;
+        }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                plugin.getLogger().info("Config.yml changed, reloading...");
+                // Note: Actual reload is handled by the plugin's reload command
+                // This is just a notification that the file changed
+            }
+        }.runTask(plugin);
+    }
+}
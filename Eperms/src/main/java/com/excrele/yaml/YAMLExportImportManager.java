@@ -1,10 +1,20 @@
 package com.excrele.yaml;
 
+import com.excrele.managers.SnapshotManager;
+import com.excrele.storage.StorageBackend;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -13,124 +23,124 @@ import java.util.concurrent.CompletableFuture;
 public class YAMLExportImportManager {
     private final JavaPlugin plugin;
     private final YAMLFileManager fileManager;
+    private final SnapshotManager snapshotManager;
+    private final StorageBackend storage;
     
-    public YAMLExportImportManager(JavaPlugin plugin, YAMLFileManager fileManager) {
+    public YAMLExportImportManager(JavaPlugin plugin, YAMLFileManager fileManager,
+                                   SnapshotManager snapshotManager, StorageBackend storage) {
         this.plugin = plugin;
         this.fileManager = fileManager;
+        this.snapshotManager = snapshotManager;
+        this.storage = storage;
     }
     
     /**
-     * Export ranks to a YAML file.
+     * Export ranks to a YAML file. Call on the main thread; only the copy taken here is
+     * written out in the background.
      */
     public CompletableFuture<Boolean> exportRanks(File exportFile) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-                
-                // Create export directory if needed
-                exportFile.getParentFile().mkdirs();
-                
-                // Copy ranks section
-                FileConfiguration exportConfig = new org.bukkit.configuration.file.YamlConfiguration();
-                if (ranksConfig.contains("ranks")) {
-                    exportConfig.set("ranks", ranksConfig.getConfigurationSection("ranks"));
-                }
-                
-                exportConfig.save(exportFile);
-                return true;
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to export ranks: " + e.getMessage());
-                return false;
-            }
-        });
+        ConfigSnapshot ranks = ConfigSnapshot.of(fileManager.getConfig("ranks.yml"), Collections.singleton("ranks"));
+        return export(exportFile, ranks, "ranks");
     }
     
     /**
-     * Export players to a YAML file.
+     * Export players to a YAML file. Call on the main thread; only the copy taken here is
+     * written out in the background.
      */
     public CompletableFuture<Boolean> exportPlayers(File exportFile) {
-        return CompletableFuture.supplyAsync(() -> {
+        FileConfiguration playersConfig;
+        if (fileManager.isUseShardedPlayers()) {
+            playersConfig = fileManager.getPlayerStore().exportPlayers();
+        } else if (fileManager.isUseSplitFiles()) {
+            playersConfig = fileManager.getConfig("players.yml");
+        } else {
+            playersConfig = fileManager.getConfig("ranks.yml");
+        }
+        return export(exportFile, ConfigSnapshot.of(playersConfig, Collections.singleton("players")), "players");
+    }
+    
+    private CompletableFuture<Boolean> export(File exportFile, ConfigSnapshot snapshot, String what) {
+        return fileManager.getIOExecutor().submit(exportFile.getAbsolutePath(), () -> {
             try {
-                FileConfiguration playersConfig;
-                if (fileManager.isUseSplitFiles()) {
-                    playersConfig = fileManager.getConfig("players.yml");
-                } else {
-                    playersConfig = fileManager.getConfig("ranks.yml");
-                }
-                
+                // Create export directory if needed
                 exportFile.getParentFile().mkdirs();
-                
-                FileConfiguration exportConfig = new org.bukkit.configuration.file.YamlConfiguration();
-                if (playersConfig.contains("players")) {
-                    exportConfig.set("players", playersConfig.getConfigurationSection("players"));
-                }
-                
-                exportConfig.save(exportFile);
+                Files.write(exportFile.toPath(), snapshot.toYaml().getBytes(StandardCharsets.UTF_8));
                 return true;
             } catch (IOException e) {
-                plugin.getLogger().severe("Failed to export players: " + e.getMessage());
+                plugin.getLogger().severe("Failed to export " + what + ": " + e.getMessage());
                 return false;
             }
         });
     }
     
     /**
-     * Import from a YAML file.
+     * Import from a YAML file. The file is parsed in the background; the loaded
+     * configuration is only changed on the main thread.
      */
     public CompletableFuture<Boolean> importFromFile(File importFile, boolean merge) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (!importFile.exists()) {
-                    plugin.getLogger().warning("Import file not found: " + importFile.getName());
-                    return false;
+        if (!importFile.exists()) {
+            plugin.getLogger().warning("Import file not found: " + importFile.getName());
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        // Create backup before import, and wait for it so it holds the old data
+        YAMLBackupManager backupManager = new YAMLBackupManager(plugin, fileManager);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        backupManager.createAutoBackup().handle((backup, error) -> null)
+            .thenCompose(ignored -> fileManager.getIOExecutor().submit(() -> YamlConfiguration.loadConfiguration(importFile)))
+            .whenComplete((importConfig, error) -> {
+                if (error != null || !plugin.isEnabled()) {
+                    plugin.getLogger().severe("Failed to import from file: "
+                        + (error != null ? error.getMessage() : "plugin disabled"));
+                    result.complete(false);
+                    return;
                 }
-                
-                // Create backup before import
-                YAMLBackupManager backupManager = new YAMLBackupManager(plugin, fileManager);
-                backupManager.createAutoBackup();
-                
-                FileConfiguration importConfig = org.bukkit.configuration.file.YamlConfiguration.loadConfiguration(importFile);
-                
-                if (importConfig.contains("ranks")) {
-                    FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
-                    if (merge) {
-                        // Merge ranks
-                        for (String rankKey : importConfig.getConfigurationSection("ranks").getKeys(false)) {
-                            ranksConfig.set("ranks." + rankKey, importConfig.getConfigurationSection("ranks." + rankKey));
-                        }
-                    } else {
-                        // Replace ranks
-                        ranksConfig.set("ranks", importConfig.getConfigurationSection("ranks"));
+                plugin.getServer().getScheduler().runTask(plugin, () -> result.complete(apply(importConfig, merge)));
+            });
+        return result;
+    }
+    
+    private boolean apply(FileConfiguration importConfig, boolean merge) {
+        try {
+            if (importConfig.contains("ranks")) {
+                FileConfiguration ranksConfig = fileManager.getConfig("ranks.yml");
+                if (merge) {
+                    // Merge ranks
+                    for (String rankKey : importConfig.getConfigurationSection("ranks").getKeys(false)) {
+                        ranksConfig.set("ranks." + rankKey, importConfig.getConfigurationSection("ranks." + rankKey));
                     }
-                    fileManager.saveConfigSync("ranks.yml", ranksConfig);
+                } else {
+                    // Replace ranks
+                    ranksConfig.set("ranks", importConfig.getConfigurationSection("ranks"));
                 }
-                
-                if (importConfig.contains("players")) {
-                    FileConfiguration playersConfig;
-                    String fileName = fileManager.isUseSplitFiles() ? "players.yml" : "ranks.yml";
-                    playersConfig = fileManager.getConfig(fileName);
-                    
-                    if (merge) {
-                        // Merge players
-                        for (String playerKey : importConfig.getConfigurationSection("players").getKeys(false)) {
-                            playersConfig.set("players." + playerKey, importConfig.getConfigurationSection("players." + playerKey));
-                        }
-                    } else {
-                        // Replace players
-                        playersConfig.set("players", importConfig.getConfigurationSection("players"));
+                fileManager.saveConfig("ranks.yml", ranksConfig);
+            }
+            
+            ConfigurationSection players = importConfig.getConfigurationSection("players");
+            if (players != null) {
+                // Through the storage backend, so the assignments reach the database and the snapshot
+                Map<UUID, String> ranks = new LinkedHashMap<>();
+                if (!merge) {
+                    // Replace players: anyone not in the file goes back to the default rank
+                    for (UUID uuid : storage.loadPlayerRanks().keySet()) {
+                        ranks.put(uuid, "default");
                     }
-                    fileManager.saveConfigSync(fileName, playersConfig);
                 }
-                
-                // Clear cache
-                fileManager.clearAllCaches();
-                
-                return true;
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to import from file: " + e.getMessage());
-                return false;
+                for (String key : players.getKeys(false)) {
+                    try {
+                        ranks.put(UUID.fromString(key), players.getString(key + ".rank", "default"));
+                    } catch (IllegalArgumentException e) {
+                        plugin.getLogger().warning("Skipping player entry with invalid UUID: " + key);
+                    }
+                }
+                snapshotManager.setPlayerRanks(ranks);
             }
-        });
+            
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to import from file: " + e.getMessage());
+            return false;
+        }
     }
 }
 
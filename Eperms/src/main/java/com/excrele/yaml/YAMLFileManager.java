@@ -5,32 +5,107 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages YAML file operations with async support and caching.
+ *
+ * Frequent writers should use {@link #markDirty(String, FileConfiguration)} instead of saving:
+ * dirty files are serialized once per write-behind window and written by a single
+ * background writer thread, so a burst of mutations produces one write per file.
+ *
+ * Changes to ranks.yml can instead be recorded path by path with
+ * {@link #recordChange(String, FileConfiguration, String)}: they are appended to
+ * data/journal.log and the full file is only rewritten when the journal is compacted.
+ *
+ * While a {@link YAMLConfigWatcher} is running, cached files are only reloaded after it
+ * reports an external change, so cached reads touch no files. Each report bumps the file's
+ * generation; a cached copy is current while its load generation matches.
  */
 public class YAMLFileManager {
+    private static final String JOURNALED_FILE = "ranks.yml";
+    
     private final JavaPlugin plugin;
     private final Map<String, FileConfiguration> configCache;
     private final Map<String, Long> lastModified;
+    private final Map<String, Long> generations;
+    private final Map<String, Long> loadedGenerations;
+    private volatile boolean watched;
     private final File dataFolder;
     private boolean useSplitFiles;
+    private boolean useShardedPlayers;
+    private final ShardedPlayerStore playerStore;
+    
+    // Write-behind state
+    private final Map<String, FileConfiguration> dirty;
+    private final Map<String, Integer> pendingWrites;
+    private final AtomicBoolean flushScheduled;
+    private final ExecutorService writer;
+    private final IOExecutor ioExecutor;
+    private long writeBehindTicks;
+    
+    // Journal state
+    private final Map<String, FileConfiguration> journaled;
+    private MutationJournal journal;
+    private long compactSizeBytes;
     
     public YAMLFileManager(JavaPlugin plugin) {
         this.plugin = plugin;
         this.dataFolder = plugin.getDataFolder();
         this.configCache = new ConcurrentHashMap<>();
         this.lastModified = new ConcurrentHashMap<>();
+        this.generations = new ConcurrentHashMap<>();
+        this.loadedGenerations = new ConcurrentHashMap<>();
         this.useSplitFiles = false;
+        this.dirty = new ConcurrentHashMap<>();
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.flushScheduled = new AtomicBoolean();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ExcrelePerms-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.journaled = new ConcurrentHashMap<>();
+        this.playerStore = new ShardedPlayerStore(this, plugin.getLogger());
         
         // Load config to check if split files are enabled
         loadConfig();
+        
+        FileConfiguration config = getConfig("config.yml");
+        this.ioExecutor = new IOExecutor(Math.max(1, config.getInt("io-threads", 2)),
+            config.getInt("io-queue-size", 64), plugin.getLogger());
+        if (config.getBoolean("journal-enabled", true)) {
+            journal = new MutationJournal(new File(dataFolder, "data/journal.log"), writer, plugin.getLogger());
+            compactSizeBytes = config.getLong("journal-compact-size-kb", 1024L) * 1024L;
+        }
+    }
+    
+    /**
+     * Start folding the journal into ranks.yml at the configured interval.
+     */
+    public void startCompaction() {
+        if (journal == null) {
+            return;
+        }
+        long interval = Math.max(1L, getConfig("config.yml").getLong("journal-compact-interval-seconds", 300L)) * 20L;
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::compact, interval, interval);
     }
     
     /**
@@ -50,6 +125,17 @@ public class YAMLFileManager {
                 config.set("async-operations", true);
                 config.set("cache-enabled", true);
                 config.set("lazy-loading", true);
+                config.set("offline-cache-size", 1000);
+                config.set("prefetch-timeout-ms", 2000);
+                config.set("work-budget-ms", 2.0);
+                config.set("io-threads", 2);
+                config.set("io-queue-size", 64);
+                config.set("storage-backend", "yaml");
+                config.set("sharded-player-files", false);
+                config.set("write-behind-window-ms", 1000);
+                config.set("journal-enabled", true);
+                config.set("journal-compact-interval-seconds", 300);
+                config.set("journal-compact-size-kb", 1024);
                 config.save(configFile);
             } catch (IOException e) {
                 plugin.getLogger().severe("Failed to create config.yml: " + e.getMessage());
@@ -58,6 +144,8 @@ public class YAMLFileManager {
         
         FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
         this.useSplitFiles = config.getBoolean("use-split-files", false);
+        this.useShardedPlayers = config.getBoolean("sharded-player-files", false);
+        this.writeBehindTicks = Math.max(1L, config.getLong("write-behind-window-ms", 1000L) / 50L);
     }
     
     /**
@@ -66,11 +154,20 @@ public class YAMLFileManager {
     public FileConfiguration getConfig(String fileName) {
         File file = new File(dataFolder, fileName);
         
+        // A file with unwritten changes is newer in memory than on disk
+        if (hasPendingChanges(fileName) && configCache.containsKey(fileName)) {
+            return configCache.get(fileName);
+        }
+        
         // Check cache
-        if (configCache.containsKey(fileName)) {
-            long currentModified = file.lastModified();
-            if (lastModified.containsKey(fileName) && lastModified.get(fileName) == currentModified) {
-                return configCache.get(fileName);
+        FileConfiguration cached = configCache.get(fileName);
+        if (cached != null) {
+            if (watched) {
+                if (generations.getOrDefault(fileName, 0L).equals(loadedGenerations.get(fileName))) {
+                    return cached;
+                }
+            } else if (lastModified.containsKey(fileName) && lastModified.get(fileName) == file.lastModified()) {
+                return cached;
             }
         }
         
@@ -85,9 +182,22 @@ public class YAMLFileManager {
             }
         }
         
+        // Read the generation first so a change reported during the load triggers another one
+        long generation = generations.getOrDefault(fileName, 0L);
+        long modified = file.lastModified();
         FileConfiguration config = YamlConfiguration.loadConfiguration(file);
         configCache.put(fileName, config);
-        lastModified.put(fileName, file.lastModified());
+        lastModified.put(fileName, modified);
+        loadedGenerations.put(fileName, generation);
+        
+        // Changes journaled after the last compaction (e.g. before a crash) are not in the file yet
+        if (journal != null && JOURNALED_FILE.equals(fileName)) {
+            int replayed = journal.replay(config);
+            if (replayed > 0) {
+                plugin.getLogger().info("Replayed " + replayed + " journaled changes to " + fileName);
+                journaled.put(fileName, config);
+            }
+        }
         return config;
     }
     
@@ -95,45 +205,138 @@ public class YAMLFileManager {
      * Save configuration file (async if enabled).
      */
     public CompletableFuture<Boolean> saveConfig(String fileName, FileConfiguration config) {
+        // Goes through the writer so it can't be overtaken by an older queued write
+        configCache.put(fileName, config);
+        dirty.put(fileName, config);
+        return submitWrite(fileName);
+    }
+    
+    /**
+     * Save configuration synchronously (for critical operations).
+     */
+    public boolean saveConfigSync(String fileName, FileConfiguration config) {
+        configCache.put(fileName, config);
+        dirty.put(fileName, config);
+        return flush(fileName);
+    }
+    
+    /**
+     * Mark a file as changed. It will be written by the background writer within the
+     * write-behind window; further changes in that window are folded into the same write.
+     */
+    public void markDirty(String fileName, FileConfiguration config) {
+        configCache.put(fileName, config);
+        dirty.put(fileName, config);
+        if (flushScheduled.compareAndSet(false, true)) {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTaskLater(plugin, this::writeDirty, writeBehindTicks);
+            } else {
+                flush();
+            }
+        }
+    }
+    
+    /**
+     * Record a change to a single path. For ranks.yml the new value is appended to the
+     * journal; other files (or everything, with the journal disabled) are marked dirty.
+     * If the journal can't take the record, the whole file is saved right away instead.
+     *
+     * @return false if the change could not be recorded
+     */
+    public boolean recordChange(String fileName, FileConfiguration config, String path) {
+        if (journal == null || !JOURNALED_FILE.equals(fileName)) {
+            markDirty(fileName, config);
+            return true;
+        }
+        configCache.put(fileName, config);
+        journaled.put(fileName, config);
+        if (journal.append(path, config.get(path)) < 0) {
+            plugin.getLogger().warning("Journal unavailable, saving " + fileName + " in full");
+            return saveConfigSync(fileName, config);
+        }
+        if (journal.size() > compactSizeBytes) {
+            markDirty(fileName, config);
+        }
+        return true;
+    }
+    
+    /**
+     * Check if a file has changes that are not in the file on disk yet.
+     */
+    public boolean hasPendingChanges(String fileName) {
+        return dirty.containsKey(fileName) || journaled.containsKey(fileName) || pendingWrites.containsKey(fileName);
+    }
+    
+    /**
+     * Fold journaled changes into their files.
+     */
+    private void compact() {
+        for (String fileName : new ArrayList<>(journaled.keySet())) {
+            submitWrite(fileName);
+        }
+    }
+    
+    /**
+     * Snapshot every dirty file and hand it to the writer thread.
+     * Runs on the main thread so the snapshots don't race with config edits.
+     */
+    private void writeDirty() {
+        flushScheduled.set(false);
+        submitDirty();
+    }
+    
+    private List<CompletableFuture<Boolean>> submitDirty() {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        Set<String> fileNames = new HashSet<>(dirty.keySet());
+        fileNames.addAll(journaled.keySet());
+        for (String fileName : fileNames) {
+            futures.add(submitWrite(fileName));
+        }
+        return futures;
+    }
+    
+    private CompletableFuture<Boolean> submitWrite(String fileName) {
+        FileConfiguration config = dirty.remove(fileName);
+        FileConfiguration compacted = journaled.remove(fileName);
+        if (config == null) {
+            config = compacted;
+        }
+        if (config == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        // Every record up to here describes a change already present in the snapshot
+        long journalSequence = journal != null && JOURNALED_FILE.equals(fileName) ? journal.getSequence() : -1L;
+        // The caller only pays for the copy; the writer emits the YAML
+        ConfigSnapshot snapshot = ConfigSnapshot.of(config);
+        pendingWrites.merge(fileName, 1, Integer::sum);
         return CompletableFuture.supplyAsync(() -> {
             try {
-                File file = new File(dataFolder, fileName);
-                
-                // Atomic write: write to temp file, then rename
-                File tempFile = new File(dataFolder, fileName + ".tmp");
-                config.save(tempFile);
-                
-                // Atomic move
-                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-                
-                // Update cache
-                configCache.put(fileName, config);
-                lastModified.put(fileName, file.lastModified());
-                
-                return true;
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to save " + fileName + ": " + e.getMessage());
-                return false;
+                boolean written = writeAtomically(fileName, snapshot.toYaml());
+                if (written && journalSequence >= 0) {
+                    journal.truncate(journalSequence);
+                }
+                return written;
+            } finally {
+                pendingWrites.computeIfPresent(fileName, (key, count) -> count > 1 ? count - 1 : null);
             }
-        });
+        }, writer);
     }
     
     /**
-     * Save configuration synchronously (for critical operations).
+     * Write data to a temp file, sync it to disk and move it over the target.
      */
-    public boolean saveConfigSync(String fileName, FileConfiguration config) {
+    private boolean writeAtomically(String fileName, String data) {
         try {
             File file = new File(dataFolder, fileName);
-            
-            // Atomic write
             File tempFile = new File(dataFolder, fileName + ".tmp");
-            config.save(tempFile);
+            file.getParentFile().mkdirs();
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(data.getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            // Recorded before the move so the watcher can recognise the event as our own write
+            lastModified.put(fileName, tempFile.lastModified());
             Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            
-            // Update cache
-            configCache.put(fileName, config);
-            lastModified.put(fileName, file.lastModified());
-            
             return true;
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save " + fileName + ": " + e.getMessage());
@@ -141,12 +344,87 @@ public class YAMLFileManager {
         }
     }
     
+    /**
+     * Durably write every dirty file now and wait for all queued writes to finish.
+     * Use on shutdown and before anything that reads the files from disk.
+     */
+    public boolean flush() {
+        return await(submitDirty());
+    }
+    
+    /**
+     * Durably write one file now if it has changes, waiting for earlier queued writes.
+     */
+    public boolean flush(String fileName) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        futures.add(submitWrite(fileName));
+        return await(futures);
+    }
+    
+    private boolean await(List<CompletableFuture<Boolean>> futures) {
+        // The writer is FIFO, so a barrier task also waits for writes queued earlier
+        futures.add(CompletableFuture.supplyAsync(() -> true, writer));
+        boolean success = true;
+        for (CompletableFuture<Boolean> future : futures) {
+            try {
+                success &= future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                plugin.getLogger().severe("Write failed: " + e.getCause());
+                success = false;
+            }
+        }
+        return success;
+    }
+    
+    /**
+     * Flush everything and stop the writer thread.
+     */
+    public void shutdown() {
+        // Backup, export and import tasks may still save files through the writer
+        ioExecutor.shutdown(30L);
+        flush();
+        if (journal != null) {
+            writer.execute(journal::close);
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for pending writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Get the pool for file work outside the write-behind writer (backups, exports, imports).
+     */
+    public IOExecutor getIOExecutor() {
+        return ioExecutor;
+    }
+    
     /**
      * Clear cache for a specific file.
      */
     public void clearCache(String fileName) {
         configCache.remove(fileName);
         lastModified.remove(fileName);
+        loadedGenerations.remove(fileName);
+    }
+    
+    /**
+     * Drop a file's cached copy and unwritten changes, then delete the file on the writer
+     * thread once the writes already queued for it are done.
+     */
+    public CompletableFuture<Boolean> deleteFile(String fileName) {
+        dirty.remove(fileName);
+        journaled.remove(fileName);
+        clearCache(fileName);
+        File file = new File(dataFolder, fileName);
+        return CompletableFuture.supplyAsync(() -> !file.exists() || file.delete(), writer);
     }
     
     /**
@@ -155,6 +433,102 @@ public class YAMLFileManager {
     public void clearAllCaches() {
         configCache.clear();
         lastModified.clear();
+        loadedGenerations.clear();
+    }
+    
+    /**
+     * Parse a file from disk without touching the cache, e.g. to reload it off the main thread.
+     * For ranks.yml, journaled changes that are not in the file yet are replayed on top, so the
+     * result combines the file with our own unwritten changes. Blocks until queued journal
+     * records are on disk; don't call from the main thread with a busy writer.
+     */
+    public ExternalRead readExternal(String fileName) {
+        File file = new File(dataFolder, fileName);
+        long generation = generations.getOrDefault(fileName, 0L);
+        Long ownWrite = lastModified.get(fileName);
+        long journalSequence = -1L;
+        if (journal != null && JOURNALED_FILE.equals(fileName)) {
+            journalSequence = journal.getSequence();
+            // Journal records are written by the writer thread; wait until ours are on disk
+            CompletableFuture.runAsync(() -> { }, writer).join();
+        }
+        long modified = file.lastModified();
+        FileConfiguration config = file.exists() ? YamlConfiguration.loadConfiguration(file) : new YamlConfiguration();
+        if (journalSequence >= 0) {
+            journal.replay(config);
+        }
+        return new ExternalRead(config, generation, ownWrite, journalSequence, modified);
+    }
+    
+    /**
+     * Make a file read with {@link #readExternal(String)} the cached copy. Main thread only.
+     *
+     * @return false if the file changed in memory or on disk since it was read; read it again
+     */
+    public boolean installExternal(String fileName, ExternalRead read) {
+        if (dirty.containsKey(fileName) || pendingWrites.containsKey(fileName)
+                || generations.getOrDefault(fileName, 0L) != read.generation
+                || !Objects.equals(lastModified.get(fileName), read.ownWrite)
+                || (read.journalSequence >= 0 && journal.getSequence() != read.journalSequence)) {
+            return false;
+        }
+        configCache.put(fileName, read.config);
+        lastModified.put(fileName, read.modified);
+        loadedGenerations.put(fileName, read.generation);
+        if (journaled.containsKey(fileName)) {
+            // Compaction now writes the merged copy
+            journaled.put(fileName, read.config);
+        }
+        return true;
+    }
+    
+    /**
+     * A file parsed from disk, with what is needed to check it is still current.
+     */
+    public static class ExternalRead {
+        private final FileConfiguration config;
+        private final long generation;
+        private final Long ownWrite;
+        private final long journalSequence;
+        private final long modified;
+        
+        private ExternalRead(FileConfiguration config, long generation, Long ownWrite, long journalSequence, long modified) {
+            this.config = config;
+            this.generation = generation;
+            this.ownWrite = ownWrite;
+            this.journalSequence = journalSequence;
+            this.modified = modified;
+        }
+        
+        public FileConfiguration getConfig() {
+            return config;
+        }
+    }
+    
+    /**
+     * Set whether a watcher reports file changes. Without one, cached files are
+     * checked against their modification time on every read.
+     */
+    public void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+    
+    /**
+     * Report that a file changed on disk. Our own writes are recognised and ignored;
+     * anything else invalidates the cached copy.
+     *
+     * @return true if the change came from outside the plugin
+     */
+    public boolean onFileChanged(String fileName) {
+        if (pendingWrites.containsKey(fileName)) {
+            return false;
+        }
+        Long written = lastModified.get(fileName);
+        if (written != null && written == new File(dataFolder, fileName).lastModified()) {
+            return false;
+        }
+        generations.merge(fileName, 1L, Long::sum);
+        return true;
     }
     
     /**
@@ -173,7 +547,10 @@ public class YAMLFileManager {
      * Reload configuration from file.
      */
     public FileConfiguration reloadConfig(String fileName) {
-        clearCache(fileName);
+        // While changes are pending the cached copy is newer than the file
+        if (!hasPendingChanges(fileName)) {
+            clearCache(fileName);
+        }
         return getConfig(fileName);
     }
     
@@ -193,6 +570,29 @@ public class YAMLFileManager {
         }
     }
     
+    public boolean isUseShardedPlayers() {
+        return useShardedPlayers;
+    }
+    
+    public void setUseShardedPlayers(boolean useShardedPlayers) {
+        this.useShardedPlayers = useShardedPlayers;
+        File configFile = new File(dataFolder, "config.yml");
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        config.set("sharded-player-files", useShardedPlayers);
+        try {
+            config.save(configFile);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to update config.yml: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the sharded player store used when sharded-player-files is enabled.
+     */
+    public ShardedPlayerStore getPlayerStore() {
+        return playerStore;
+    }
+    
     public File getDataFolder() {
         return dataFolder;
     }
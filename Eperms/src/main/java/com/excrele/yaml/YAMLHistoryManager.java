@@ -1,6 +1,6 @@
 package com.excrele.yaml;
 
-import org.bukkit.configuration.file.FileConfiguration;
+import com.excrele.storage.StorageBackend;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.text.SimpleDateFormat;
@@ -8,19 +8,20 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Manages rank change history in YAML format.
+ * Manages rank change history. Entries are kept by the storage backend.
  */
 public class YAMLHistoryManager {
     @SuppressWarnings("unused")
     private final JavaPlugin plugin;
-    private final YAMLFileManager fileManager;
+    private final StorageBackend storage;
     private final int maxHistoryPerPlayer;
     
-    public YAMLHistoryManager(JavaPlugin plugin, YAMLFileManager fileManager) {
+    public YAMLHistoryManager(JavaPlugin plugin, YAMLFileManager fileManager, StorageBackend storage) {
         this.plugin = plugin;
-        this.fileManager = fileManager;
+        this.storage = storage;
         this.maxHistoryPerPlayer = fileManager.getConfig("config.yml").getInt("history-retention", 50);
     }
     
@@ -28,40 +29,22 @@ public class YAMLHistoryManager {
      * Record a rank change in history.
      */
     public void recordRankChange(UUID playerUUID, String oldRank, String newRank, String sender, String reason) {
-        FileConfiguration historyConfig = fileManager.getConfig("history.yml");
-        
         String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        String playerKey = "players." + playerUUID.toString();
-        
-        List<String> history = historyConfig.getStringList(playerKey + ".changes");
-        if (history == null) {
-            history = new ArrayList<>();
-        }
         
         String changeEntry = String.format("%s|%s|%s|%s|%s", 
             timestamp, oldRank, newRank, sender, reason != null ? reason : "");
         
-        history.add(changeEntry);
-        
-        // Limit history size
-        if (history.size() > maxHistoryPerPlayer) {
-            history = history.subList(history.size() - maxHistoryPerPlayer, history.size());
-        }
-        
-        historyConfig.set(playerKey + ".changes", history);
-        historyConfig.set(playerKey + ".last-updated", timestamp);
-        
-        fileManager.saveConfig("history.yml", historyConfig);
+        storage.appendHistory(playerUUID, changeEntry, maxHistoryPerPlayer);
     }
     
     /**
-     * Get player's rank history.
+     * Get player's rank history. The future may complete off the main thread.
      */
-    public List<HistoryEntry> getPlayerHistory(UUID playerUUID) {
-        FileConfiguration historyConfig = fileManager.getConfig("history.yml");
-        String playerKey = "players." + playerUUID.toString();
-        
-        List<String> history = historyConfig.getStringList(playerKey + ".changes");
+    public CompletableFuture<List<HistoryEntry>> getPlayerHistory(UUID playerUUID) {
+        return storage.getHistory(playerUUID).thenApply(this::parseHistory);
+    }
+    
+    private List<HistoryEntry> parseHistory(List<String> history) {
         List<HistoryEntry> entries = new ArrayList<>();
         
         if (history != null) {
@@ -86,9 +69,7 @@ public class YAMLHistoryManager {
      * Clear player's history.
      */
     public void clearPlayerHistory(UUID playerUUID) {
-        FileConfiguration historyConfig = fileManager.getConfig("history.yml");
-        historyConfig.set("players." + playerUUID.toString(), null);
-        fileManager.saveConfig("history.yml", historyConfig);
+        storage.clearHistory(playerUUID);
     }
     
     /**